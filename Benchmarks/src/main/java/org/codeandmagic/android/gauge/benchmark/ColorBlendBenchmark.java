@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.codeandmagic.android.gauge.ColorBlend;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Color of the semicircle gauge for values sweeping across the whole scale.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColorBlendBenchmark {
+
+	private static final int NEGATIVE = 0xffff0000;
+	private static final int NEUTRAL = 0xffcccccc;
+	private static final int POSITIVE = 0xff00ff00;
+
+	@Param({ "true", "false" })
+	public boolean gradient;
+
+	private float mValue;
+
+	@Benchmark
+	public int getValueColor() {
+		mValue += 0.37f;
+		if (mValue > 100) {
+			mValue -= 100;
+		}
+		return ColorBlend.getValueColor(mValue, NEGATIVE, NEUTRAL, POSITIVE, gradient);
+	}
+
+	@Benchmark
+	public int blend() {
+		mValue += 0.37f;
+		if (mValue > 100) {
+			mValue -= 100;
+		}
+		return ColorBlend.blend(NEUTRAL, POSITIVE, mValue);
+	}
+}
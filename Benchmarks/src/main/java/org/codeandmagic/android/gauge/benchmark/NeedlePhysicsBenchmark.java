@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.codeandmagic.android.gauge.CriticallyDampedMotion;
+import org.codeandmagic.android.gauge.ExponentialMotion;
+import org.codeandmagic.android.gauge.NeedlePhysics;
+import org.codeandmagic.android.gauge.SlewMotion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the needle motion models: one frame, and a whole sweep across the scale until it
+ * settles, at various frame intervals.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NeedlePhysicsBenchmark {
+
+	@Param({ "8", "16", "33", "250" })
+	public int frameMillis;
+
+	@Param({ "spring", "exponential", "slew" })
+	public String motion;
+
+	private final NeedlePhysics mPhysics = new NeedlePhysics();
+	private float mFrameSeconds;
+	private float mTarget;
+
+	@Setup
+	public void setUp() {
+		mFrameSeconds = frameMillis / 1000.0f;
+		if ("exponential".equals(motion)) {
+			mPhysics.setMotion(new ExponentialMotion());
+		} else if ("slew".equals(motion)) {
+			mPhysics.setMotion(new SlewMotion(100));
+		} else {
+			mPhysics.setMotion(new CriticallyDampedMotion());
+		}
+		mPhysics.snapTo(0);
+		mTarget = 100;
+		mPhysics.setTarget(mTarget);
+	}
+
+	@Benchmark
+	public float frame() {
+		if (mPhysics.advance(mFrameSeconds)) {
+			// Keep it moving, back and forth across the scale
+			mTarget = 100 - mTarget;
+			mPhysics.setTarget(mTarget);
+		}
+		return mPhysics.getValue();
+	}
+
+	@Benchmark
+	public int sweep() {
+		mPhysics.snapTo(0);
+		mPhysics.setTarget(100);
+		int frames = 1;
+		while (!mPhysics.advance(mFrameSeconds)) {
+			frames++;
+		}
+		return frames;
+	}
+}
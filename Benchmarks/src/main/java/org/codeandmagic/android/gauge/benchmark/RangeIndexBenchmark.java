@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.codeandmagic.android.gauge.RangeIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Range lookup of random values, including some outside the scale, for various numbers of ranges.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RangeIndexBenchmark {
+
+	private static final int VALUES = 1024;
+
+	@Param({ "1", "4", "16", "256" })
+	public int ranges;
+
+	private RangeIndex mIndex;
+	private final float[] mValues = new float[VALUES];
+	private int mNext;
+
+	@Setup
+	public void setUp() {
+		final float[] upperBounds = new float[ranges];
+		final int[] colors = new int[ranges];
+		for (int i = 0; i < ranges; i++) {
+			upperBounds[i] = 100.0f * (i + 1) / ranges;
+			colors[i] = 0xff000000 | i;
+		}
+		mIndex = new RangeIndex(upperBounds, colors);
+
+		final Random random = new Random(42);
+		for (int i = 0; i < VALUES; i++) {
+			mValues[i] = -10 + 120 * random.nextFloat();
+		}
+	}
+
+	@Benchmark
+	public int indexOf() {
+		mNext = (mNext + 1) & (VALUES - 1);
+		return mIndex.indexOf(mValues[mNext]);
+	}
+
+	@Benchmark
+	public int getColorForValue() {
+		mNext = (mNext + 1) & (VALUES - 1);
+		return mIndex.getColorForValue(mValues[mNext]);
+	}
+}
@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.codeandmagic.android.gauge.RangeIndex;
+import org.codeandmagic.android.gauge.ScaleLayout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Laying out the scale, which happens once per gauge style, and mapping values to needle angles,
+ * which happens every frame, for scales of various sizes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScaleLayoutBenchmark {
+
+	private static final float[] RANGE_VALUES = { 16.0f, 25.0f, 40.0f, 100.0f };
+	private static final int[] RANGE_COLORS = { 0xffe7202b, 0xffe86f21, 0xffe8e721, 0xff1bca21 };
+
+	@Param({ "10", "100", "1000" })
+	public int divisions;
+
+	@Param({ "5" })
+	public int subdivisions;
+
+	private ScaleLayout mLayout;
+	private float[] mTickLines;
+	private float mValue;
+
+	@Setup
+	public void setUp() {
+		mLayout = createLayout();
+		mTickLines = new float[4 * mLayout.getTickCount()];
+	}
+
+	private ScaleLayout createLayout() {
+		return ScaleLayout.forRange(0, 100, 30, 330, divisions, subdivisions);
+	}
+
+	@Benchmark
+	public float[] layoutTicks() {
+		final ScaleLayout layout = createLayout();
+		final int ticks = layout.getTickCount();
+		for (int i = 0; i < ticks; i++) {
+			layout.getTickLine(i, 0.1f, layout.isDivision(i) ? 0.045f : 0.015f, mTickLines, 4 * i);
+		}
+		return mTickLines;
+	}
+
+	@Benchmark
+	public RangeIndex indexTicks() {
+		return new RangeIndex(RANGE_VALUES, RANGE_COLORS, mLayout);
+	}
+
+	@Benchmark
+	public float getAngleForValue() {
+		mValue += 0.37f;
+		if (mValue > 100) {
+			mValue -= 100;
+		}
+		return mLayout.getAngleForValue(mValue) % 360;
+	}
+}
@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+/**
+ * Color interpolation of the semicircle gauge. Colors are packed ARGB ints, the same as
+ * android.graphics.Color uses.
+ */
+public final class ColorBlend {
+
+	private ColorBlend() {
+	}
+
+	/**
+	 * Mixes two colors channel by channel.
+	 *
+	 * @param weight from 0 (only {@code from}) to 100 (only {@code to})
+	 * @return the opaque mix
+	 */
+	public static int blend(final int from, final int to, final float weight) {
+		final float inverse = 100 - weight;
+		final int red = (int) ((((from >> 16) & 0xff) * inverse + ((to >> 16) & 0xff) * weight) / 100f);
+		final int green = (int) ((((from >> 8) & 0xff) * inverse + ((to >> 8) & 0xff) * weight) / 100f);
+		final int blue = (int) (((from & 0xff) * inverse + (to & 0xff) * weight) / 100f);
+		return 0xff000000 | (red << 16) | (green << 8) | blue;
+	}
+
+	/**
+	 * @param value from 0 to 100, neutral around 50
+	 * @param gradient whether the color fades from {@code negative} to {@code neutral} below 50 and
+	 *            from {@code neutral} to {@code positive} above it, or switches between them
+	 * @return the color the semicircle has at the value
+	 */
+	public static int getValueColor(final float value, final int negative, final int neutral, final int positive,
+			final boolean gradient) {
+		if (value > 50.1) {
+			return gradient ? blend(neutral, positive, value) : positive;
+		} else if (value < 49.9) {
+			return gradient ? blend(negative, neutral, value * 2) : negative;
+		}
+		return neutral;
+	}
+}
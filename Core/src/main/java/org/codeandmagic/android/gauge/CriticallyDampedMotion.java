@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+/**
+ * A spring damped just enough not to overshoot a target approached from rest:
+ * x(t) = (x0 + (v0 + w x0) t) e^(-w t). It carries the velocity of the previous motion over, so
+ * changing the target mid-flight is smooth.
+ */
+public class CriticallyDampedMotion implements NeedleMotion {
+
+	public static final float DEFAULT_FREQUENCY = 10.0f;
+
+	// Enough to pin the settle time down to well below a microsecond
+	private static final int SETTLE_ITERATIONS = 32;
+
+	private final float mFrequency;
+
+	public CriticallyDampedMotion() {
+		this(DEFAULT_FREQUENCY);
+	}
+
+	/**
+	 * @param frequency the natural frequency of the spring in radians per second, higher is
+	 *            stiffer
+	 */
+	public CriticallyDampedMotion(final float frequency) {
+		if (frequency <= 0) {
+			throw new IllegalArgumentException("The frequency must be positive.");
+		}
+		mFrequency = frequency;
+	}
+
+	public float getFrequency() {
+		return mFrequency;
+	}
+
+	@Override
+	public float getOffset(final float offset, final float velocity, final float time) {
+		final double w = mFrequency;
+		return (float) ((offset + (velocity + w * offset) * time) * Math.exp(-w * time));
+	}
+
+	@Override
+	public float getVelocity(final float offset, final float velocity, final float time) {
+		final double w = mFrequency;
+		return (float) ((velocity - w * (velocity + w * offset) * time) * Math.exp(-w * time));
+	}
+
+	@Override
+	public float getSettleTime(final float offset, final float velocity, final float threshold) {
+		final double w = mFrequency;
+		final double a = offset;
+		final double b = velocity + w * offset;
+
+		// The velocity changes sign at most once, at te. Before and after it the offset is
+		// monotonic, and after it the offset decays towards 0 without crossing it again
+		final double te = 0 != b ? Math.max(0, velocity / (w * b)) : 0;
+
+		// Upper bound: the envelope (|a| + |b| t) e^(-w t) decreases past 1 / w
+		double high = Math.max(te, 1 / w);
+		while ((Math.abs(a) + Math.abs(b) * high) * Math.exp(-w * high) > threshold) {
+			high *= 2;
+		}
+
+		// Settled at t if the offset is within the threshold from t on, which is monotonic in t
+		final boolean settledAtTe = Math.abs(offsetAt(a, b, te)) <= threshold;
+		double low = 0;
+		if (isSettled(a, b, 0, te, settledAtTe, threshold)) {
+			return 0;
+		}
+		for (int i = 0; i < SETTLE_ITERATIONS; i++) {
+			final double middle = (low + high) / 2;
+			if (isSettled(a, b, middle, te, settledAtTe, threshold)) {
+				high = middle;
+			} else {
+				low = middle;
+			}
+		}
+		return (float) high;
+	}
+
+	private boolean isSettled(final double a, final double b, final double time, final double te,
+			final boolean settledAtTe, final float threshold) {
+		final boolean within = Math.abs(offsetAt(a, b, time)) <= threshold;
+		return time >= te ? within : within && settledAtTe;
+	}
+
+	private double offsetAt(final double a, final double b, final double time) {
+		return (a + b * time) * Math.exp(-mFrequency * time);
+	}
+}
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+/**
+ * Covers the same fraction of the remaining distance in equal times, x(t) = x0 e^(-t / tau). The
+ * needle starts at full speed and eases into the target; the velocity of the previous motion is
+ * not carried over.
+ */
+public class ExponentialMotion implements NeedleMotion {
+
+	public static final float DEFAULT_TIME_CONSTANT = 0.15f;
+
+	private final float mTimeConstant;
+
+	public ExponentialMotion() {
+		this(DEFAULT_TIME_CONSTANT);
+	}
+
+	/**
+	 * @param timeConstant seconds to cover 63% of the remaining distance
+	 */
+	public ExponentialMotion(final float timeConstant) {
+		if (timeConstant <= 0) {
+			throw new IllegalArgumentException("The time constant must be positive.");
+		}
+		mTimeConstant = timeConstant;
+	}
+
+	public float getTimeConstant() {
+		return mTimeConstant;
+	}
+
+	@Override
+	public float getOffset(final float offset, final float velocity, final float time) {
+		return (float) (offset * Math.exp(-time / mTimeConstant));
+	}
+
+	@Override
+	public float getVelocity(final float offset, final float velocity, final float time) {
+		return -getOffset(offset, velocity, time) / mTimeConstant;
+	}
+
+	@Override
+	public float getSettleTime(final float offset, final float velocity, final float threshold) {
+		final float distance = Math.abs(offset);
+		return distance > threshold ? (float) (mTimeConstant * Math.log(distance / threshold)) : 0;
+	}
+}
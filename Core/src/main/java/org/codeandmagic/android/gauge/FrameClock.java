@@ -0,0 +1,29 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+/**
+ * Source of frame ticks for the needle animation. The default implementation is backed by
+ * the {@link android.view.Choreographer}, or a Handler before API 16; a manual implementation can
+ * be injected to drive the animation deterministically, e.g. off-device.
+ */
+public interface FrameClock {
+
+	interface Callback {
+		void doFrame(long frameTimeNanos);
+	}
+
+	/**
+	 * @return the current time in nanoseconds, on the same time base as the frame times
+	 */
+	long nanoTime();
+
+	void postFrameCallback(Callback callback);
+
+	void removeFrameCallback(Callback callback);
+}
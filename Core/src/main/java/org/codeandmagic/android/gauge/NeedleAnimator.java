@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+/**
+ * Drives the {@link NeedlePhysics} of one or more needles from a single {@link FrameClock}. Frames
+ * are only requested while a needle is moving; once they have all settled no further callbacks are
+ * scheduled.
+ */
+public class NeedleAnimator implements FrameClock.Callback {
+
+	public interface Listener {
+		/**
+		 * @param needle the index of the needle, 0 for the first one
+		 */
+		void onNeedleMoved(int needle, float value);
+	}
+
+	private NeedlePhysics[] mPhysics = { new NeedlePhysics() };
+	// Which needles moved in the current frame
+	private boolean[] mMoved = new boolean[1];
+	private final Listener mListener;
+	private FrameClock mClock;
+	private long mLastFrameTime;
+	private boolean mRunning;
+
+	public NeedleAnimator(final FrameClock clock, final Listener listener) {
+		mClock = clock;
+		mListener = listener;
+	}
+
+	public void setFrameClock(final FrameClock clock) {
+		final boolean running = mRunning;
+		stop();
+		mClock = clock;
+		if (running) {
+			start();
+		}
+	}
+
+	public int getNeedleCount() {
+		return mPhysics.length;
+	}
+
+	/**
+	 * Adds or removes needles at the end. New needles rest on the value and move like the first
+	 * one.
+	 *
+	 * @param count at least 1
+	 */
+	public void setNeedleCount(final int count, final float value) {
+		if (count < 1) {
+			throw new IllegalArgumentException("At least one needle is needed");
+		}
+		final int previousCount = mPhysics.length;
+		final NeedlePhysics[] physics = new NeedlePhysics[count];
+		System.arraycopy(mPhysics, 0, physics, 0, Math.min(count, previousCount));
+		for (int i = previousCount; i < count; i++) {
+			physics[i] = new NeedlePhysics();
+			physics[i].setMotion(mPhysics[0].getMotion());
+			physics[i].snapTo(value);
+		}
+		mPhysics = physics;
+		mMoved = new boolean[count];
+		if (mRunning && isSettled()) {
+			stop();
+		}
+	}
+
+	/**
+	 * @return the physics of the first needle
+	 */
+	public NeedlePhysics getPhysics() {
+		return mPhysics[0];
+	}
+
+	public NeedlePhysics getPhysics(final int needle) {
+		return mPhysics[needle];
+	}
+
+	public float getValue() {
+		return mPhysics[0].getValue();
+	}
+
+	public float getValue(final int needle) {
+		return mPhysics[needle].getValue();
+	}
+
+	public boolean isRunning() {
+		return mRunning;
+	}
+
+	public void setTarget(final float target) {
+		setTarget(0, target);
+	}
+
+	public void setTarget(final int needle, final float target) {
+		final NeedlePhysics physics = mPhysics[needle];
+		physics.setTarget(target);
+		if (!physics.isSettled()) {
+			start();
+		}
+	}
+
+	public void snapTo(final float value) {
+		snapTo(0, value);
+	}
+
+	/**
+	 * Puts the needle straight on the value. The others keep moving.
+	 */
+	public void snapTo(final int needle, final float value) {
+		mPhysics[needle].snapTo(value);
+		if (mRunning && isSettled()) {
+			stop();
+		}
+		mListener.onNeedleMoved(needle, value);
+	}
+
+	private boolean isSettled() {
+		for (int i = 0; i < mPhysics.length; i++) {
+			if (!mPhysics[i].isSettled()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public void start() {
+		if (!mRunning) {
+			mRunning = true;
+			mLastFrameTime = mClock.nanoTime();
+			mClock.postFrameCallback(this);
+		}
+	}
+
+	public void stop() {
+		if (mRunning) {
+			mRunning = false;
+			mClock.removeFrameCallback(this);
+		}
+	}
+
+	@Override
+	public void doFrame(final long frameTimeNanos) {
+		if (!mRunning) {
+			return;
+		}
+		final float elapsed = (frameTimeNanos - mLastFrameTime) / 1000000000.0f;
+		mLastFrameTime = frameTimeNanos;
+
+		// Every needle is advanced before anyone is told, so the listener sees whether all settled
+		final NeedlePhysics[] physics = mPhysics;
+		final boolean[] moved = mMoved;
+		boolean moving = false;
+		for (int i = 0; i < physics.length; i++) {
+			moved[i] = !physics[i].isSettled();
+			if (moved[i] && !physics[i].advance(elapsed)) {
+				moving = true;
+			}
+		}
+		if (moving) {
+			mClock.postFrameCallback(this);
+		} else {
+			mRunning = false;
+		}
+		for (int i = 0; i < physics.length; i++) {
+			if (moved[i]) {
+				mListener.onNeedleMoved(i, physics[i].getValue());
+			}
+		}
+	}
+}
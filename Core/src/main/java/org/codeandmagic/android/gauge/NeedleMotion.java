@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+/**
+ * How the needle moves to a new target, as a closed-form solution: the position and velocity at
+ * any time are computed directly from the state the motion started in, so the trajectory doesn't
+ * depend on frame timing and doesn't accumulate integration error. Motions are described relative
+ * to the target, which sits at offset 0.
+ * <p>
+ * Implementations hold no motion state, so one instance can drive any number of needles.
+ */
+public interface NeedleMotion {
+
+	/**
+	 * @param offset how far from the target the motion started
+	 * @param velocity the velocity it started with, in units per second
+	 * @param time seconds since it started
+	 * @return how far from the target the needle is at that time
+	 */
+	float getOffset(float offset, float velocity, float time);
+
+	/**
+	 * @return the velocity of the needle at that time, in units per second
+	 * @see #getOffset
+	 */
+	float getVelocity(float offset, float velocity, float time);
+
+	/**
+	 * @return how many seconds after the start the needle stays within the threshold of the
+	 *         target for good, 0 if it already does
+	 */
+	float getSettleTime(float offset, float velocity, float threshold);
+}
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+/**
+ * The motion of a needle towards its target. Every new target or state starts a motion from the
+ * current value and velocity, which a {@link NeedleMotion} then evaluates in closed form at the
+ * elapsed time. The trajectory doesn't depend on how the time was sliced into frames, and the
+ * motion ends exactly at the settle time predicted when it started.
+ */
+public class NeedlePhysics {
+
+	public static final float MAX_ELAPSED = 0.25f;
+	public static final float SETTLE_THRESHOLD = 0.01f;
+
+	public static final NeedleMotion DEFAULT_MOTION = new CriticallyDampedMotion();
+
+	private NeedleMotion mMotion = DEFAULT_MOTION;
+	private float mValue;
+	private float mTarget;
+	private float mVelocity;
+	private boolean mSettled = true;
+
+	// The motion under way, relative to the target
+	private float mStartOffset;
+	private float mStartVelocity;
+	private float mTime;
+	private float mSettleTime;
+
+	public float getValue() {
+		return mValue;
+	}
+
+	public float getTarget() {
+		return mTarget;
+	}
+
+	public float getVelocity() {
+		return mVelocity;
+	}
+
+	public boolean isSettled() {
+		return mSettled;
+	}
+
+	/**
+	 * @return seconds until the needle settles, 0 if it has
+	 */
+	public float getRemainingTime() {
+		return mSettled ? 0.0f : mSettleTime - mTime;
+	}
+
+	/**
+	 * Changes how the needle moves, a critically damped spring by default. A motion under way
+	 * continues from where it is with the new model.
+	 */
+	public void setMotion(final NeedleMotion motion) {
+		mMotion = motion;
+		if (!mSettled) {
+			start();
+		}
+	}
+
+	public NeedleMotion getMotion() {
+		return mMotion;
+	}
+
+	public void setTarget(final float target) {
+		mTarget = target;
+		if (Math.abs(mTarget - mValue) > SETTLE_THRESHOLD || !mSettled) {
+			start();
+		} else {
+			mValue = mTarget;
+		}
+	}
+
+	/**
+	 * Restores a previously saved motion state.
+	 */
+	public void setState(final float value, final float velocity, final float target) {
+		mValue = value;
+		mVelocity = velocity;
+		mTarget = target;
+		start();
+	}
+
+	/**
+	 * Moves the needle to the given value at rest.
+	 */
+	public void snapTo(final float value) {
+		setState(value, 0.0f, value);
+	}
+
+	private void start() {
+		mStartOffset = mValue - mTarget;
+		mStartVelocity = mVelocity;
+		mTime = 0.0f;
+		mSettleTime = mMotion.getSettleTime(mStartOffset, mStartVelocity, SETTLE_THRESHOLD);
+		mSettled = false;
+		if (mSettleTime <= 0.0f) {
+			settle();
+		}
+	}
+
+	private void settle() {
+		mValue = mTarget;
+		mVelocity = 0.0f;
+		mSettled = true;
+	}
+
+	/**
+	 * Advances the motion by the given time. Long pauses are capped to {@link #MAX_ELAPSED} so a
+	 * late frame doesn't make the needle jump.
+	 *
+	 * @return true if the needle has settled on its target
+	 */
+	public boolean advance(final float seconds) {
+		if (mSettled) {
+			return true;
+		}
+		mTime += Math.min(Math.max(seconds, 0.0f), MAX_ELAPSED);
+		if (mTime >= mSettleTime) {
+			settle();
+		} else {
+			mValue = mTarget + mMotion.getOffset(mStartOffset, mStartVelocity, mTime);
+			mVelocity = mMotion.getVelocity(mStartOffset, mStartVelocity, mTime);
+		}
+		return mSettled;
+	}
+}
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+/**
+ * Bounds of the area a needle covers while it rotates, used to only repaint that part of a gauge.
+ * Angles are in degrees, clockwise, with 0 pointing North, like on the canvas.
+ */
+public final class NeedleSweep {
+
+	private NeedleSweep() {
+	}
+
+	/**
+	 * Computes the bounding box of a needle of the given reach rotating clockwise from
+	 * {@code startAngle} by {@code sweepAngle} degrees around (centerX, centerY).
+	 *
+	 * @param hub half the size of the box around the center covered at any angle (screw, needle base)
+	 * @param out receives left, top, right, bottom
+	 */
+	public static void getBounds(final float centerX, final float centerY, final float radius, final float hub,
+			final float startAngle, final float sweepAngle, final float[] out) {
+		out[0] = centerX - hub;
+		out[1] = centerY - hub;
+		out[2] = centerX + hub;
+		out[3] = centerY + hub;
+		include(centerX, centerY, radius, startAngle, out);
+		include(centerX, centerY, radius, startAngle + sweepAngle, out);
+
+		// The arc reaches further than its ends where it crosses North, East, South or West
+		final float start = ((startAngle % 360) + 360) % 360;
+		for (int cardinal = 0; cardinal < 360; cardinal += 90) {
+			if ((cardinal - start + 360) % 360 <= sweepAngle) {
+				include(centerX, centerY, radius, cardinal, out);
+			}
+		}
+	}
+
+	private static void include(final float centerX, final float centerY, final float radius, final float angle,
+			final float[] out) {
+		final double radians = Math.toRadians(angle);
+		final float x = centerX + radius * (float) Math.sin(radians);
+		final float y = centerY - radius * (float) Math.cos(radians);
+		out[0] = Math.min(out[0], x);
+		out[1] = Math.min(out[1], y);
+		out[2] = Math.max(out[2], x);
+		out[3] = Math.max(out[3], y);
+	}
+}
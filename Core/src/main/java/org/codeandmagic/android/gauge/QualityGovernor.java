@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+/**
+ * Lowers the rendering quality in stages while frames take longer than the budget. Frame times
+ * are smoothed with a moving average, and the level only moves down one stage at a time with a
+ * few frames in between, so a single slow frame doesn't cost any quality. Quality is never raised
+ * while frames come in: it is restored all at once by {@link #reset()}, e.g. once the motion ends.
+ */
+public class QualityGovernor {
+
+	public static final int QUALITY_FULL = 0;
+	public static final int QUALITY_NO_NEEDLE_SHADOW = 1;
+	public static final int QUALITY_NO_TEXT_SHADOW = 2;
+	public static final int QUALITY_NO_ANTI_ALIAS = 3;
+
+	public static final long DEFAULT_FRAME_BUDGET_NANOS = 1000000000L / 60;
+
+	// Frames are over budget when the average is this much above it, a dropped frame doubles it
+	private static final float OVER_BUDGET = 1.25f;
+	// Longer frames count as this many budgets: a single one, however long, leaves the average
+	// under OVER_BUDGET, two in a row don't
+	private static final float MAX_FRAME = 1.75f;
+	// Weight of a new frame in the average
+	private static final float SMOOTHING = 0.25f;
+	// Frames to wait after a step before judging the new level
+	private static final int SETTLE_FRAMES = 8;
+
+	private long mFrameBudgetNanos;
+	private int mLevel = QUALITY_FULL;
+	private float mAverageNanos;
+	private int mFrames;
+
+	public QualityGovernor() {
+		this(DEFAULT_FRAME_BUDGET_NANOS);
+	}
+
+	public QualityGovernor(final long frameBudgetNanos) {
+		mFrameBudgetNanos = frameBudgetNanos;
+	}
+
+	public void setFrameBudgetNanos(final long frameBudgetNanos) {
+		mFrameBudgetNanos = frameBudgetNanos;
+	}
+
+	public long getFrameBudgetNanos() {
+		return mFrameBudgetNanos;
+	}
+
+	/**
+	 * @return one of the QUALITY_ constants, higher ones draw less
+	 */
+	public int getLevel() {
+		return mLevel;
+	}
+
+	/**
+	 * Feeds the duration of a frame.
+	 *
+	 * @return true if the level went down
+	 */
+	public boolean onFrame(final long frameNanos) {
+		final float nanos = Math.min(frameNanos, MAX_FRAME * mFrameBudgetNanos);
+		mAverageNanos = 0 == mFrames && QUALITY_FULL == mLevel ? nanos : mAverageNanos + SMOOTHING
+				* (nanos - mAverageNanos);
+		mFrames++;
+		if (mLevel < QUALITY_NO_ANTI_ALIAS && mFrames >= SETTLE_FRAMES
+				&& mAverageNanos > OVER_BUDGET * mFrameBudgetNanos) {
+			mLevel++;
+			mFrames = 0;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Restores full quality and forgets the frame times.
+	 *
+	 * @return true if the level went up
+	 */
+	public boolean reset() {
+		final boolean changed = QUALITY_FULL != mLevel;
+		mLevel = QUALITY_FULL;
+		mAverageNanos = 0;
+		mFrames = 0;
+		return changed;
+	}
+}
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+/**
+ * Maps values to the colored ranges of a scale. Each range ends at its upper bound, which must be
+ * in ascending order. Values are clamped into the first and last range instead of being rejected,
+ * and the range of every scale tick is looked up once, when the index is built.
+ */
+public class RangeIndex {
+
+	private final float[] mUpperBounds;
+	private final int[] mColors;
+	private final int[] mTickRanges;
+
+	public RangeIndex(final float[] upperBounds, final int[] colors) {
+		this(upperBounds, colors, null);
+	}
+
+	public RangeIndex(final float[] upperBounds, final int[] colors, final ScaleLayout layout) {
+		if (0 == upperBounds.length || upperBounds.length != colors.length) {
+			throw new IllegalArgumentException("The ranges and colors arrays must have the same, non-zero length.");
+		}
+		mUpperBounds = upperBounds.clone();
+		mColors = colors.clone();
+
+		if (null != layout) {
+			mTickRanges = new int[layout.getTickCount()];
+			for (int i = 0; i < mTickRanges.length; i++) {
+				mTickRanges[i] = indexOf(layout.getTickValue(i));
+			}
+		} else {
+			mTickRanges = new int[0];
+		}
+	}
+
+	public int size() {
+		return mUpperBounds.length;
+	}
+
+	public float getUpperBound(final int range) {
+		return mUpperBounds[range];
+	}
+
+	public int getColor(final int range) {
+		return mColors[range];
+	}
+
+	/**
+	 * @return the first range whose upper bound is above the value, or the last one
+	 */
+	public int indexOf(final float value) {
+		int low = 0;
+		int high = mUpperBounds.length - 1;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (value < mUpperBounds[mid]) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	public int getColorForValue(final float value) {
+		return mColors[indexOf(value)];
+	}
+
+	/**
+	 * @return the range of a tick of the {@link ScaleLayout} this index was built with
+	 */
+	public int indexOfTick(final int tick) {
+		return mTickRanges[tick];
+	}
+}
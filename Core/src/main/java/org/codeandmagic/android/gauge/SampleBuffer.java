@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer, single-consumer ring buffer of timestamped samples, stored in
+ * primitive arrays. One thread may {@link #offer} while another {@link #drain}s; neither ever
+ * blocks. When the buffer is full new samples are dropped and counted.
+ */
+public class SampleBuffer {
+
+	private final float[] mValues;
+	private final long[] mTimes;
+	private final int mMask;
+
+	// Next slot to write, only advanced by the producer
+	private final AtomicLong mHead = new AtomicLong();
+	// Next slot to read, only advanced by the consumer
+	private final AtomicLong mTail = new AtomicLong();
+	private final AtomicLong mDropped = new AtomicLong();
+
+	public SampleBuffer(final int capacity) {
+		int size = 1;
+		while (size < capacity) {
+			size <<= 1;
+		}
+		mValues = new float[size];
+		mTimes = new long[size];
+		mMask = size - 1;
+	}
+
+	public int getCapacity() {
+		return mValues.length;
+	}
+
+	/**
+	 * Producer side.
+	 *
+	 * @return false if the buffer was full and the sample was dropped
+	 */
+	public boolean offer(final float value, final long timeNanos) {
+		final long head = mHead.get();
+		if (head - mTail.get() >= mValues.length) {
+			mDropped.incrementAndGet();
+			return false;
+		}
+		final int index = (int) head & mMask;
+		mValues[index] = value;
+		mTimes[index] = timeNanos;
+		// Publishes the slot written above
+		mHead.lazySet(head + 1);
+		return true;
+	}
+
+	/**
+	 * Consumer side: feeds every pending sample to the reducer, after {@link SampleReducer#begin()}.
+	 *
+	 * @return the number of samples drained
+	 */
+	public int drain(final SampleReducer reducer) {
+		final long tail = mTail.get();
+		final long head = mHead.get();
+		reducer.begin();
+		for (long i = tail; i < head; i++) {
+			final int index = (int) i & mMask;
+			reducer.add(mValues[index], mTimes[index]);
+		}
+		// Hands the slots back to the producer
+		mTail.lazySet(head);
+		return (int) (head - tail);
+	}
+
+	public boolean isEmpty() {
+		return mHead.get() == mTail.get();
+	}
+
+	public long getDroppedCount() {
+		return mDropped.get();
+	}
+}
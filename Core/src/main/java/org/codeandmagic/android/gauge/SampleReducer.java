@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+/**
+ * Reduces the samples received during one frame to the single value the needle should move to.
+ */
+public class SampleReducer {
+
+	public enum Policy {
+		/** The most recent sample. */
+		LAST,
+		/** The average of the frame's samples. */
+		MEAN,
+		/** Whichever of the frame's minimum and maximum is further from the current target, so spikes show. */
+		MIN_MAX,
+		/** The highest sample, held for the peak hold time before following the signal down again. */
+		PEAK_HOLD
+	}
+
+	public static final long DEFAULT_PEAK_HOLD_NANOS = 1000000000L;
+
+	private Policy mPolicy = Policy.LAST;
+	private long mPeakHoldNanos = DEFAULT_PEAK_HOLD_NANOS;
+
+	private int mCount;
+	private float mLast;
+	private double mSum;
+	private float mMin;
+	private float mMax;
+
+	// Survives across frames
+	private boolean mHasPeak;
+	private float mPeak;
+	private long mPeakTime;
+
+	public void setPolicy(final Policy policy) {
+		mPolicy = policy;
+		mHasPeak = false;
+	}
+
+	public Policy getPolicy() {
+		return mPolicy;
+	}
+
+	public void setPeakHoldNanos(final long peakHoldNanos) {
+		mPeakHoldNanos = peakHoldNanos;
+	}
+
+	public void begin() {
+		mCount = 0;
+		mSum = 0;
+		mMin = Float.POSITIVE_INFINITY;
+		mMax = Float.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Forgets the samples of the frame and the held peak.
+	 */
+	public void reset() {
+		begin();
+		mHasPeak = false;
+	}
+
+	public void add(final float value, final long timeNanos) {
+		mCount++;
+		mLast = value;
+		mSum += value;
+		mMin = Math.min(mMin, value);
+		mMax = Math.max(mMax, value);
+		if (!mHasPeak || value >= mPeak || timeNanos - mPeakTime > mPeakHoldNanos) {
+			mHasPeak = true;
+			mPeak = value;
+			mPeakTime = timeNanos;
+		}
+	}
+
+	public int getCount() {
+		return mCount;
+	}
+
+	/**
+	 * @return the smallest sample of the frame
+	 */
+	public float getMin() {
+		return mMin;
+	}
+
+	/**
+	 * @return the largest sample of the frame
+	 */
+	public float getMax() {
+		return mMax;
+	}
+
+	/**
+	 * @param target where the needle is currently heading
+	 * @return the new target, or the current one if there were no samples
+	 */
+	public float reduce(final float target) {
+		if (0 == mCount) {
+			return target;
+		}
+		switch (mPolicy) {
+		case MEAN:
+			return (float) (mSum / mCount);
+		case MIN_MAX:
+			return Math.abs(mMax - target) >= Math.abs(mMin - target) ? mMax : mMin;
+		case PEAK_HOLD:
+			return mPeak;
+		case LAST:
+		default:
+			return mLast;
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+/**
+ * Geometry of the scale ticks in the unit square. Tick 0 sits at the start of the scale and each
+ * following tick is one subdivision further, rotated clockwise around the center.
+ */
+public class ScaleLayout {
+
+	public static final float CENTER = 0.5f;
+
+	private final float mRotation;
+	private final float mSubdivisionAngle;
+	private final float mStartValue;
+	private final float mSubdivisionValue;
+	private final int mSubdivisions;
+	private final int mTickCount;
+
+	public ScaleLayout(final float rotation, final float subdivisionAngle, final float startValue,
+			final float subdivisionValue, final int divisions, final int subdivisions) {
+		mRotation = rotation;
+		mSubdivisionAngle = subdivisionAngle;
+		mStartValue = startValue;
+		mSubdivisionValue = subdivisionValue;
+		mSubdivisions = subdivisions;
+		mTickCount = divisions * subdivisions + 1;
+	}
+
+	/**
+	 * Lays out a scale going from {@code startValue} at {@code startAngle} to {@code endValue} at
+	 * {@code endAngle}, with the angles measured clockwise from South like the gauge attributes.
+	 */
+	public static ScaleLayout forRange(final float startValue, final float endValue, final float startAngle,
+			final float endAngle, final int divisions, final int subdivisions) {
+		final float rotation = (startAngle + 180) % 360;
+		final float divisionValue = (endValue - startValue) / divisions;
+		final float subdivisionAngle = (endAngle - startAngle) / (divisions * subdivisions);
+		return new ScaleLayout(rotation, subdivisionAngle, startValue, divisionValue / subdivisions, divisions,
+				subdivisions);
+	}
+
+	public int getTickCount() {
+		return mTickCount;
+	}
+
+	public float getTickValue(final int tick) {
+		return mStartValue + tick * mSubdivisionValue;
+	}
+
+	public boolean isDivision(final int tick) {
+		return 0 == tick % mSubdivisions;
+	}
+
+	/**
+	 * @return the clockwise rotation pointing at the value, in degrees, with 0 pointing North. It
+	 *         isn't wrapped to [0, 360), so angles of values further apart never get closer.
+	 */
+	public float getAngleForValue(final float value) {
+		return mRotation + ((value - mStartValue) / mSubdivisionValue) * mSubdivisionAngle;
+	}
+
+	/**
+	 * @return the clockwise rotation of the tick, in degrees, with 0 pointing North
+	 */
+	public float getTickAngle(final int tick) {
+		return mRotation + tick * mSubdivisionAngle;
+	}
+
+	/**
+	 * Writes the end points of a tick running from {@code top} downwards by {@code length}, before
+	 * rotation, as x1, y1, x2, y2 at {@code offset}.
+	 */
+	public void getTickLine(final int tick, final float top, final float length, final float[] out, final int offset) {
+		getLine(getTickAngle(tick), top, length, out, offset);
+	}
+
+	/**
+	 * Same as {@link #getTickLine} at the angle pointing at the value.
+	 */
+	public void getValueLine(final float value, final float top, final float length, final float[] out, final int offset) {
+		getLine(getAngleForValue(value), top, length, out, offset);
+	}
+
+	private static void getLine(final float degrees, final float top, final float length, final float[] out,
+			final int offset) {
+		final double angle = Math.toRadians(degrees);
+		final float sin = (float) Math.sin(angle);
+		final float cos = (float) Math.cos(angle);
+		final float r1 = top - CENTER;
+		final float r2 = top + length - CENTER;
+		out[offset] = CENTER - r1 * sin;
+		out[offset + 1] = CENTER + r1 * cos;
+		out[offset + 2] = CENTER - r2 * sin;
+		out[offset + 3] = CENTER + r2 * cos;
+	}
+}
@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+/**
+ * Moves at a constant rate and stops dead on the target, like a stepper driven needle. The
+ * velocity of the previous motion is not carried over.
+ */
+public class SlewMotion implements NeedleMotion {
+
+	private final float mRate;
+
+	/**
+	 * @param rate the speed of the needle in units per second
+	 */
+	public SlewMotion(final float rate) {
+		if (rate <= 0) {
+			throw new IllegalArgumentException("The rate must be positive.");
+		}
+		mRate = rate;
+	}
+
+	public float getRate() {
+		return mRate;
+	}
+
+	@Override
+	public float getOffset(final float offset, final float velocity, final float time) {
+		final float distance = Math.max(Math.abs(offset) - mRate * time, 0);
+		return offset < 0 ? -distance : distance;
+	}
+
+	@Override
+	public float getVelocity(final float offset, final float velocity, final float time) {
+		if (Math.abs(offset) <= mRate * time) {
+			return 0;
+		}
+		return offset < 0 ? mRate : -mRate;
+	}
+
+	@Override
+	public float getSettleTime(final float offset, final float velocity, final float threshold) {
+		final float distance = Math.abs(offset);
+		return distance > threshold ? (distance - threshold) / mRate : 0;
+	}
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Formats values into a reusable char buffer, so the readout can be drawn on every frame without
+ * allocating. Without decimals the value is truncated like {@code (int) value}; with decimals it
+ * is rounded half up, like {@code String.format("%.nf")}.
+ */
+public class ValueFormatter {
+
+	public static final int MAX_DECIMALS = 6;
+
+	private static final long[] POWERS_OF_TEN = { 1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L };
+
+	private final char[] mBuffer = new char[32];
+	private final int mDecimals;
+	private final boolean mShowSign;
+	private final char mDecimalSeparator;
+
+	public ValueFormatter(final int decimals, final boolean showSign, final Locale locale) {
+		this(decimals, showSign, DecimalFormatSymbols.getInstance(locale).getDecimalSeparator());
+	}
+
+	public ValueFormatter(final int decimals, final boolean showSign, final char decimalSeparator) {
+		if (decimals < 0 || decimals > MAX_DECIMALS) {
+			throw new IllegalArgumentException("Decimals must be between 0 and " + MAX_DECIMALS);
+		}
+		mDecimals = decimals;
+		mShowSign = showSign;
+		mDecimalSeparator = decimalSeparator;
+	}
+
+	public int getDecimals() {
+		return mDecimals;
+	}
+
+	public boolean isShowSign() {
+		return mShowSign;
+	}
+
+	public char getDecimalSeparator() {
+		return mDecimalSeparator;
+	}
+
+	public char[] getChars() {
+		return mBuffer;
+	}
+
+	/**
+	 * Formats the value into {@link #getChars()}.
+	 *
+	 * @return the number of chars written
+	 */
+	public int format(final float value) {
+		if (Float.isNaN(value) || Float.isInfinite(value)) {
+			return copy(Float.isNaN(value) ? "NaN" : value > 0 ? "\u221E" : "-\u221E");
+		}
+		// Round the magnitude, so halves go away from zero like they do in String.format()
+		long magnitude = 0 == mDecimals ? Math.abs((long) value) : Math.round(Math.abs((double) value) * POWERS_OF_TEN[mDecimals]);
+		final long scaled = value < 0 ? -magnitude : magnitude;
+
+		// Write the digits backwards from the end of the buffer
+		int start = mBuffer.length;
+		int digits = 0;
+		do {
+			if (digits == mDecimals && digits > 0) {
+				mBuffer[--start] = mDecimalSeparator;
+			}
+			mBuffer[--start] = (char) ('0' + magnitude % 10);
+			magnitude /= 10;
+			digits++;
+		} while (magnitude > 0 || digits <= mDecimals);
+
+		if (scaled < 0) {
+			mBuffer[--start] = '-';
+		} else if (mShowSign && scaled > 0) {
+			mBuffer[--start] = '+';
+		}
+
+		final int length = mBuffer.length - start;
+		System.arraycopy(mBuffer, start, mBuffer, 0, length);
+		return length;
+	}
+
+	private int copy(final String text) {
+		text.getChars(0, text.length(), mBuffer, 0);
+		return text.length();
+	}
+}
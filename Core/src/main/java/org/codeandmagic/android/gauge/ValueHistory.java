@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+/**
+ * The latest timestamped values, in a ring buffer of primitive arrays. Once full, each new value
+ * overwrites the oldest one, so it never grows or allocates however long it is fed. Values are
+ * indexed from the oldest. Not thread safe.
+ */
+public class ValueHistory {
+
+	private final float[] mValues;
+	private final long[] mTimes;
+	// Slot of the oldest value
+	private int mTail;
+	private int mSize;
+
+	public ValueHistory(final int capacity) {
+		mValues = new float[capacity];
+		mTimes = new long[capacity];
+	}
+
+	public int getCapacity() {
+		return mValues.length;
+	}
+
+	public int size() {
+		return mSize;
+	}
+
+	/**
+	 * @param timeNanos when the value was taken, not before the previous one
+	 */
+	public void add(final float value, final long timeNanos) {
+		final int capacity = mValues.length;
+		int index = mTail + mSize;
+		if (mSize < capacity) {
+			mSize++;
+		} else {
+			mTail = (mTail + 1) % capacity;
+		}
+		index %= capacity;
+		mValues[index] = value;
+		mTimes[index] = timeNanos;
+	}
+
+	/**
+	 * Forgets the values taken before the time.
+	 */
+	public void removeBefore(final long timeNanos) {
+		while (mSize > 0 && mTimes[mTail] < timeNanos) {
+			mTail = (mTail + 1) % mValues.length;
+			mSize--;
+		}
+	}
+
+	public void clear() {
+		mTail = 0;
+		mSize = 0;
+	}
+
+	/**
+	 * @param i from 0 for the oldest value to size() - 1 for the latest
+	 */
+	public float getValue(final int i) {
+		return mValues[(mTail + i) % mValues.length];
+	}
+
+	public long getTime(final int i) {
+		return mTimes[(mTail + i) % mValues.length];
+	}
+
+	/**
+	 * @return the smallest value, or NaN if there is none
+	 */
+	public float getMin() {
+		float min = Float.NaN;
+		for (int i = 0; i < mSize; i++) {
+			final float value = getValue(i);
+			if (!(value >= min)) {
+				min = value;
+			}
+		}
+		return min;
+	}
+
+	/**
+	 * @return the largest value, or NaN if there is none
+	 */
+	public float getMax() {
+		float max = Float.NaN;
+		for (int i = 0; i < mSize; i++) {
+			final float value = getValue(i);
+			if (!(value <= max)) {
+				max = value;
+			}
+		}
+		return max;
+	}
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class NeedlePhysicsTest {
+
+	private static final float FRAME = 1.0f / 60.0f;
+	private static final float EPSILON = 1e-4f;
+
+	@Test
+	public void criticallyDampedSettlesOnTargetWithoutOvershoot() {
+		assertSettlesWithoutOvershoot(new CriticallyDampedMotion());
+	}
+
+	@Test
+	public void exponentialSettlesOnTargetWithoutOvershoot() {
+		assertSettlesWithoutOvershoot(new ExponentialMotion());
+	}
+
+	@Test
+	public void slewSettlesOnTargetAtItsRate() {
+		final float rate = 200.0f;
+		final NeedlePhysics physics = start(new SlewMotion(rate), 100.0f);
+		final float settleTime = physics.getRemainingTime();
+		assertEquals(0.5f, settleTime, EPSILON);
+
+		float time = 0.0f;
+		float previous = physics.getValue();
+		while (!physics.advance(FRAME)) {
+			time += FRAME;
+			assertTrue(physics.getValue() - previous <= rate * FRAME + EPSILON);
+			assertTrue(physics.getValue() <= 100.0f);
+			previous = physics.getValue();
+		}
+		assertTrue(time <= settleTime + FRAME);
+		assertAtRest(physics, 100.0f);
+	}
+
+	@Test
+	public void trajectoryDoesNotDependOnFrameRate() {
+		final NeedlePhysics coarse = start(new CriticallyDampedMotion(), 100.0f);
+		final NeedlePhysics fine = start(new CriticallyDampedMotion(), 100.0f);
+		coarse.advance(0.1f);
+		for (int i = 0; i < 10; i++) {
+			fine.advance(0.01f);
+		}
+		assertEquals(coarse.getValue(), fine.getValue(), 0.01f);
+		assertEquals(coarse.getVelocity(), fine.getVelocity(), 0.1f);
+	}
+
+	@Test
+	public void longPausesAreCapped() {
+		final NeedlePhysics physics = start(new SlewMotion(100.0f), 100.0f);
+		physics.advance(10.0f);
+		assertEquals(100.0f * NeedlePhysics.MAX_ELAPSED, physics.getValue(), EPSILON);
+	}
+
+	@Test
+	public void smallTargetChangesSnapWhileSettled() {
+		final NeedlePhysics physics = new NeedlePhysics();
+		physics.snapTo(50.0f);
+		physics.setTarget(50.0f + NeedlePhysics.SETTLE_THRESHOLD / 2);
+		assertAtRest(physics, 50.0f + NeedlePhysics.SETTLE_THRESHOLD / 2);
+		assertTrue(physics.advance(FRAME));
+	}
+
+	private static void assertSettlesWithoutOvershoot(final NeedleMotion motion) {
+		final NeedlePhysics physics = start(motion, 100.0f);
+		final float settleTime = physics.getRemainingTime();
+		assertTrue(settleTime > 0.0f);
+
+		float time = 0.0f;
+		float previous = physics.getValue();
+		while (!physics.advance(FRAME)) {
+			time += FRAME;
+			assertTrue(time <= settleTime + FRAME);
+			// From rest both close in monotonically
+			assertTrue(physics.getValue() >= previous);
+			assertTrue(physics.getValue() <= 100.0f);
+			previous = physics.getValue();
+		}
+		assertAtRest(physics, 100.0f);
+	}
+
+	private static NeedlePhysics start(final NeedleMotion motion, final float target) {
+		final NeedlePhysics physics = new NeedlePhysics();
+		physics.setMotion(motion);
+		physics.snapTo(0.0f);
+		physics.setTarget(target);
+		assertFalse(physics.isSettled());
+		return physics;
+	}
+
+	private static void assertAtRest(final NeedlePhysics physics, final float target) {
+		assertTrue(physics.isSettled());
+		assertEquals(target, physics.getValue(), 0.0f);
+		assertEquals(0.0f, physics.getVelocity(), 0.0f);
+		assertEquals(0.0f, physics.getRemainingTime(), 0.0f);
+	}
+}
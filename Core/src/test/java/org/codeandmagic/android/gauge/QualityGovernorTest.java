@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class QualityGovernorTest {
+
+	private static final long BUDGET = QualityGovernor.DEFAULT_FRAME_BUDGET_NANOS;
+
+	@Test
+	public void keepsFullQualityWithinBudget() {
+		final QualityGovernor governor = new QualityGovernor();
+		for (int i = 0; i < 100; i++) {
+			assertFalse(governor.onFrame(BUDGET));
+			// Somewhat over, but within the tolerance
+			assertFalse(governor.onFrame(BUDGET * 6 / 5));
+		}
+		assertEquals(QualityGovernor.QUALITY_FULL, governor.getLevel());
+	}
+
+	@Test
+	public void singleSlowFramesCostNothing() {
+		final QualityGovernor governor = new QualityGovernor();
+		// Including the very first one, which starts the average
+		assertFalse(governor.onFrame(20 * BUDGET));
+		for (int i = 0; i < 50; i++) {
+			for (int j = 0; j < 9; j++) {
+				assertFalse(governor.onFrame(BUDGET));
+			}
+			assertFalse(governor.onFrame(20 * BUDGET));
+		}
+		assertEquals(QualityGovernor.QUALITY_FULL, governor.getLevel());
+	}
+
+	@Test
+	public void twoSlowFramesInARowStepDown() {
+		final QualityGovernor governor = new QualityGovernor();
+		for (int i = 0; i < 20; i++) {
+			governor.onFrame(BUDGET);
+		}
+		assertFalse(governor.onFrame(2 * BUDGET));
+		assertTrue(governor.onFrame(2 * BUDGET));
+		assertEquals(QualityGovernor.QUALITY_NO_NEEDLE_SHADOW, governor.getLevel());
+	}
+
+	@Test
+	public void stepsDownOneLevelAtATimeWhileOverBudget() {
+		final QualityGovernor governor = new QualityGovernor();
+		int frame = 0;
+		for (int level = QualityGovernor.QUALITY_NO_NEEDLE_SHADOW; level <= QualityGovernor.QUALITY_NO_ANTI_ALIAS; level++) {
+			// Every level gets a few frames to show it helps before the next step
+			for (int i = 1; i < 8; i++) {
+				assertFalse("frame " + frame, governor.onFrame(2 * BUDGET));
+				frame++;
+			}
+			assertTrue(governor.onFrame(2 * BUDGET));
+			frame++;
+			assertEquals(level, governor.getLevel());
+		}
+		// Nothing left to turn off
+		for (int i = 0; i < 20; i++) {
+			assertFalse(governor.onFrame(2 * BUDGET));
+		}
+		assertEquals(QualityGovernor.QUALITY_NO_ANTI_ALIAS, governor.getLevel());
+	}
+
+	@Test
+	public void neverStepsUpWhileFramesComeIn() {
+		final QualityGovernor governor = new QualityGovernor();
+		for (int i = 0; i < 8; i++) {
+			governor.onFrame(2 * BUDGET);
+		}
+		assertEquals(QualityGovernor.QUALITY_NO_NEEDLE_SHADOW, governor.getLevel());
+		for (int i = 0; i < 100; i++) {
+			governor.onFrame(BUDGET / 2);
+		}
+		assertEquals(QualityGovernor.QUALITY_NO_NEEDLE_SHADOW, governor.getLevel());
+	}
+
+	@Test
+	public void resetRestoresFullQualityAndForgetsFrames() {
+		final QualityGovernor governor = new QualityGovernor();
+		for (int i = 0; i < 8; i++) {
+			governor.onFrame(2 * BUDGET);
+		}
+		assertTrue(governor.reset());
+		assertFalse(governor.reset());
+		assertEquals(QualityGovernor.QUALITY_FULL, governor.getLevel());
+		// The slow frames before the reset don't count any more
+		for (int i = 0; i < 7; i++) {
+			assertFalse(governor.onFrame(2 * BUDGET));
+		}
+		assertEquals(QualityGovernor.QUALITY_FULL, governor.getLevel());
+	}
+
+	@Test
+	public void followsTheBudget() {
+		final QualityGovernor governor = new QualityGovernor(2 * BUDGET);
+		for (int i = 0; i < 20; i++) {
+			assertFalse(governor.onFrame(2 * BUDGET));
+		}
+		governor.setFrameBudgetNanos(BUDGET);
+		for (int i = 0; i < 8; i++) {
+			governor.onFrame(2 * BUDGET);
+		}
+		assertEquals(QualityGovernor.QUALITY_NO_NEEDLE_SHADOW, governor.getLevel());
+	}
+}
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class RangeIndexTest {
+
+	private static final float[] BOUNDS = { 16.0f, 25.0f, 40.0f, 100.0f };
+	private static final int[] COLORS = { 1, 2, 3, 4 };
+
+	@Test
+	public void findsTheRangeOfValuesInside() {
+		final RangeIndex index = new RangeIndex(BOUNDS, COLORS);
+		assertEquals(0, index.indexOf(0.0f));
+		assertEquals(1, index.indexOf(20.0f));
+		assertEquals(2, index.indexOf(30.0f));
+		assertEquals(3, index.indexOf(70.0f));
+		assertEquals(3, index.getColorForValue(30.0f));
+	}
+
+	@Test
+	public void upperBoundsBelongToTheNextRange() {
+		final RangeIndex index = new RangeIndex(BOUNDS, COLORS);
+		assertEquals(0, index.indexOf(Math.nextAfter(16.0f, 0.0)));
+		assertEquals(1, index.indexOf(16.0f));
+		assertEquals(2, index.indexOf(25.0f));
+		assertEquals(3, index.indexOf(40.0f));
+	}
+
+	@Test
+	public void clampsValuesOutsideTheRanges() {
+		final RangeIndex index = new RangeIndex(BOUNDS, COLORS);
+		assertEquals(0, index.indexOf(-1000.0f));
+		assertEquals(0, index.indexOf(Float.NEGATIVE_INFINITY));
+		assertEquals(3, index.indexOf(100.0f));
+		assertEquals(3, index.indexOf(1000.0f));
+		assertEquals(3, index.indexOf(Float.POSITIVE_INFINITY));
+	}
+
+	@Test
+	public void singleRangeTakesEverything() {
+		final RangeIndex index = new RangeIndex(new float[] { 10.0f }, new int[] { 7 });
+		assertEquals(0, index.indexOf(-5.0f));
+		assertEquals(0, index.indexOf(50.0f));
+		assertEquals(7, index.getColorForValue(50.0f));
+	}
+
+	@Test
+	public void looksUpTicksLikeValues() {
+		final ScaleLayout layout = ScaleLayout.forRange(0.0f, 100.0f, 30.0f, 330.0f, 10, 5);
+		final RangeIndex index = new RangeIndex(BOUNDS, COLORS, layout);
+		for (int tick = 0; tick < layout.getTickCount(); tick++) {
+			assertEquals(index.indexOf(layout.getTickValue(tick)), index.indexOfTick(tick));
+		}
+	}
+
+	@Test
+	public void copiesTheArrays() {
+		final float[] bounds = BOUNDS.clone();
+		final int[] colors = COLORS.clone();
+		final RangeIndex index = new RangeIndex(bounds, colors);
+		bounds[0] = 50.0f;
+		colors[0] = 9;
+		assertEquals(16.0f, index.getUpperBound(0), 0.0f);
+		assertEquals(1, index.getColor(0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsMismatchedColors() {
+		new RangeIndex(BOUNDS, new int[] { 1, 2 });
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNoRanges() {
+		new RangeIndex(new float[0], new int[0]);
+	}
+}
@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SampleBufferTest {
+
+	@Test
+	public void roundsTheCapacityUpToAPowerOfTwo() {
+		assertEquals(1, new SampleBuffer(1).getCapacity());
+		assertEquals(8, new SampleBuffer(5).getCapacity());
+		assertEquals(64, new SampleBuffer(64).getCapacity());
+	}
+
+	@Test
+	public void drainsInOrderAcrossTheWrap() {
+		final SampleBuffer buffer = new SampleBuffer(4);
+		final Recorder recorder = new Recorder();
+		int next = 0;
+		// Enough rounds of uneven sizes for the indices to wrap several times
+		for (int round = 0; round < 10; round++) {
+			final int count = 1 + round % 4;
+			for (int i = 0; i < count; i++) {
+				assertTrue(buffer.offer(next, next * 10L));
+				next++;
+			}
+			assertEquals(count, buffer.drain(recorder));
+			assertEquals(count, recorder.getCount());
+			assertTrue(buffer.isEmpty());
+		}
+		assertEquals(next, recorder.mSamples);
+		assertEquals(0, buffer.getDroppedCount());
+	}
+
+	@Test
+	public void dropsAndCountsSamplesWhenFull() {
+		final SampleBuffer buffer = new SampleBuffer(4);
+		for (int i = 0; i < 4; i++) {
+			assertTrue(buffer.offer(i, i));
+		}
+		assertFalse(buffer.offer(4, 4));
+		assertFalse(buffer.offer(5, 5));
+		assertEquals(2, buffer.getDroppedCount());
+
+		final Recorder recorder = new Recorder();
+		assertEquals(4, buffer.drain(recorder));
+		assertEquals(4, recorder.mSamples);
+		// Room again once drained
+		assertTrue(buffer.offer(4, 4));
+	}
+
+	@Test
+	public void drainingNothingBeginsAnEmptyFrame() {
+		final SampleBuffer buffer = new SampleBuffer(4);
+		final SampleReducer reducer = new SampleReducer();
+		buffer.offer(3.0f, 0);
+		buffer.drain(reducer);
+		assertEquals(0, buffer.drain(reducer));
+		assertEquals(0, reducer.getCount());
+		assertEquals(3.0f, reducer.reduce(3.0f), 0.0f);
+	}
+
+	@Test
+	public void handsEverySampleOverBetweenThreads() throws InterruptedException {
+		final int total = 20000;
+		final SampleBuffer buffer = new SampleBuffer(64);
+		final Thread producer = new Thread() {
+			@Override
+			public void run() {
+				for (int i = 0; i < total; i++) {
+					while (!buffer.offer(i, i)) {
+						Thread.yield();
+					}
+				}
+			}
+		};
+		final Recorder recorder = new Recorder();
+		producer.start();
+		while (recorder.mSamples < total) {
+			if (0 == buffer.drain(recorder)) {
+				Thread.yield();
+			}
+		}
+		producer.join();
+		assertEquals(total, recorder.mSamples);
+	}
+
+	/**
+	 * Checks that samples arrive in the order offered, numbered from 0 with times ten times their
+	 * value or equal to it.
+	 */
+	private static final class Recorder extends SampleReducer {
+		int mSamples;
+
+		@Override
+		public void add(final float value, final long timeNanos) {
+			super.add(value, timeNanos);
+			assertEquals(mSamples, (int) value);
+			assertTrue(timeNanos == mSamples || timeNanos == mSamples * 10L);
+			mSamples++;
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class SampleReducerTest {
+
+	private static final long MS = 1000000L;
+
+	@Test
+	public void keepsTheTargetWithoutSamples() {
+		for (final SampleReducer.Policy policy : SampleReducer.Policy.values()) {
+			final SampleReducer reducer = new SampleReducer();
+			reducer.setPolicy(policy);
+			reducer.begin();
+			assertEquals(42.0f, reducer.reduce(42.0f), 0.0f);
+		}
+	}
+
+	@Test
+	public void reducesAFrameByPolicy() {
+		final SampleReducer reducer = new SampleReducer();
+		assertEquals(3.0f, frame(reducer, SampleReducer.Policy.LAST, 10.0f), 0.0f);
+		assertEquals(4.0f, frame(reducer, SampleReducer.Policy.MEAN, 10.0f), 1e-6f);
+		assertEquals(1.0f, reducer.getMin(), 0.0f);
+		assertEquals(8.0f, reducer.getMax(), 0.0f);
+	}
+
+	@Test
+	public void minMaxPicksTheSampleFurthestFromTheTarget() {
+		final SampleReducer reducer = new SampleReducer();
+		assertEquals(1.0f, frame(reducer, SampleReducer.Policy.MIN_MAX, 6.0f), 0.0f);
+		assertEquals(8.0f, frame(reducer, SampleReducer.Policy.MIN_MAX, 2.0f), 0.0f);
+	}
+
+	@Test
+	public void peakHoldHoldsThePeakThenFollowsTheSignalDown() {
+		final SampleReducer reducer = new SampleReducer();
+		reducer.setPolicy(SampleReducer.Policy.PEAK_HOLD);
+		reducer.setPeakHoldNanos(100 * MS);
+
+		reducer.begin();
+		reducer.add(5.0f, 0);
+		reducer.add(9.0f, 10 * MS);
+		reducer.add(4.0f, 20 * MS);
+		assertEquals(9.0f, reducer.reduce(0.0f), 0.0f);
+
+		// Lower samples within the hold time don't replace the peak, across frames
+		reducer.begin();
+		reducer.add(3.0f, 100 * MS);
+		assertEquals(9.0f, reducer.reduce(9.0f), 0.0f);
+
+		// Once it has been held long enough the signal takes over
+		reducer.begin();
+		reducer.add(2.0f, 111 * MS);
+		assertEquals(2.0f, reducer.reduce(9.0f), 0.0f);
+
+		// A new high is taken at once
+		reducer.begin();
+		reducer.add(6.0f, 112 * MS);
+		assertEquals(6.0f, reducer.reduce(2.0f), 0.0f);
+	}
+
+	@Test
+	public void resetForgetsThePeak() {
+		final SampleReducer reducer = new SampleReducer();
+		reducer.setPolicy(SampleReducer.Policy.PEAK_HOLD);
+		reducer.begin();
+		reducer.add(9.0f, 0);
+		reducer.reset();
+		reducer.add(1.0f, 1);
+		assertEquals(1.0f, reducer.reduce(0.0f), 0.0f);
+	}
+
+	private static float frame(final SampleReducer reducer, final SampleReducer.Policy policy, final float target) {
+		reducer.setPolicy(policy);
+		reducer.begin();
+		final float[] samples = { 2.0f, 8.0f, 1.0f, 6.0f, 3.0f };
+		for (int i = 0; i < samples.length; i++) {
+			reducer.add(samples[i], i);
+		}
+		return reducer.reduce(target);
+	}
+}
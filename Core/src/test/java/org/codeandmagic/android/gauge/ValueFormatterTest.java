@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Locale;
+
+import org.junit.Test;
+
+public class ValueFormatterTest {
+
+	@Test
+	public void truncatesWithoutDecimals() {
+		final ValueFormatter formatter = new ValueFormatter(0, false, '.');
+		assertEquals("42", format(formatter, 42.9f));
+		assertEquals("-42", format(formatter, -42.9f));
+		assertEquals("0", format(formatter, 0.0f));
+		assertEquals("0", format(formatter, -0.7f));
+	}
+
+	@Test
+	public void roundsHalfAwayFromZeroWithDecimals() {
+		final ValueFormatter formatter = new ValueFormatter(2, false, '.');
+		assertEquals("1.25", format(formatter, 1.245001f));
+		assertEquals("-1.25", format(formatter, -1.245001f));
+		assertEquals("10.00", format(formatter, 9.999f));
+		assertEquals("0.05", format(formatter, 0.05f));
+		assertEquals("0.00", format(formatter, 0.0f));
+	}
+
+	@Test
+	public void matchesStringFormat() {
+		final float[] values = { 0.5f, 1.5f, 2.25f, -3.75f, 123.456f, 99.95f, 1e6f };
+		for (int decimals = 1; decimals <= 3; decimals++) {
+			final ValueFormatter formatter = new ValueFormatter(decimals, false, '.');
+			for (final float value : values) {
+				assertEquals(String.format(Locale.US, "%." + decimals + "f", value), format(formatter, value));
+			}
+		}
+	}
+
+	@Test
+	public void signsPositiveValuesOnlyWhenAsked() {
+		final ValueFormatter formatter = new ValueFormatter(1, true, '.');
+		assertEquals("+3.5", format(formatter, 3.5f));
+		assertEquals("-3.5", format(formatter, -3.5f));
+		// Zero, and anything rounding to it, has no sign
+		assertEquals("0.0", format(formatter, 0.0f));
+		assertEquals("0.0", format(formatter, -0.01f));
+		assertEquals("3.5", format(new ValueFormatter(1, false, '.'), 3.5f));
+	}
+
+	@Test
+	public void usesTheDecimalSeparator() {
+		assertEquals("1,5", format(new ValueFormatter(1, false, ','), 1.5f));
+		assertEquals("1,5", format(new ValueFormatter(1, false, Locale.GERMANY), 1.5f));
+	}
+
+	@Test
+	public void formatsNonFiniteValues() {
+		final ValueFormatter formatter = new ValueFormatter(2, true, '.');
+		assertEquals("NaN", format(formatter, Float.NaN));
+		assertEquals("\u221E", format(formatter, Float.POSITIVE_INFINITY));
+		assertEquals("-\u221E", format(formatter, Float.NEGATIVE_INFINITY));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsTooManyDecimals() {
+		new ValueFormatter(ValueFormatter.MAX_DECIMALS + 1, false, '.');
+	}
+
+	private static String format(final ValueFormatter formatter, final float value) {
+		return new String(formatter.getChars(), 0, formatter.format(value));
+	}
+}
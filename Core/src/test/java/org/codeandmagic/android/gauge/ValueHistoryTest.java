@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ValueHistoryTest {
+
+	@Test
+	public void keepsValuesFromTheOldestUntilFull() {
+		final ValueHistory history = new ValueHistory(4);
+		for (int i = 0; i < 3; i++) {
+			history.add(i, i * 10L);
+		}
+		assertEquals(3, history.size());
+		assertContains(history, 0, 3);
+	}
+
+	@Test
+	public void overwritesTheOldestOnceFull() {
+		final ValueHistory history = new ValueHistory(4);
+		// Several times around the ring
+		for (int i = 0; i < 11; i++) {
+			history.add(i, i * 10L);
+			assertEquals(Math.min(i + 1, 4), history.size());
+			assertContains(history, Math.max(0, i - 3), i + 1);
+		}
+		assertEquals(4, history.getCapacity());
+	}
+
+	@Test
+	public void removesValuesBeforeATimeAcrossTheWrap() {
+		final ValueHistory history = new ValueHistory(4);
+		for (int i = 0; i < 6; i++) {
+			history.add(i, i * 10L);
+		}
+		// Holds 2..5, starting in the middle of the arrays
+		history.removeBefore(40L);
+		assertContains(history, 4, 6);
+
+		// Values added afterwards go on from the latest
+		history.add(6, 60L);
+		history.add(7, 70L);
+		history.add(8, 80L);
+		assertContains(history, 5, 9);
+
+		history.removeBefore(1000L);
+		assertEquals(0, history.size());
+		history.add(9, 90L);
+		assertContains(history, 9, 10);
+	}
+
+	@Test
+	public void clearForgetsEverything() {
+		final ValueHistory history = new ValueHistory(3);
+		for (int i = 0; i < 5; i++) {
+			history.add(i, i * 10L);
+		}
+		history.clear();
+		assertEquals(0, history.size());
+		history.add(7, 70L);
+		assertContains(history, 7, 8);
+	}
+
+	@Test
+	public void findsTheRangeOfTheValuesKept() {
+		final ValueHistory history = new ValueHistory(3);
+		assertTrue(Float.isNaN(history.getMin()));
+		assertTrue(Float.isNaN(history.getMax()));
+
+		history.add(-5.0f, 0);
+		history.add(10.0f, 1);
+		history.add(2.0f, 2);
+		assertEquals(-5.0f, history.getMin(), 0.0f);
+		assertEquals(10.0f, history.getMax(), 0.0f);
+
+		// The extremes go once they are overwritten
+		history.add(3.0f, 3);
+		history.add(4.0f, 4);
+		assertEquals(2.0f, history.getMin(), 0.0f);
+		assertEquals(4.0f, history.getMax(), 0.0f);
+	}
+
+	/**
+	 * Checks that the history holds the values from first to end - 1, each taken at ten times its
+	 * value, in order.
+	 */
+	private static void assertContains(final ValueHistory history, final int first, final int end) {
+		assertEquals(end - first, history.size());
+		for (int i = 0; i < history.size(); i++) {
+			assertEquals(first + i, history.getValue(i), 0.0f);
+			assertEquals((first + i) * 10L, history.getTime(i));
+		}
+	}
+}
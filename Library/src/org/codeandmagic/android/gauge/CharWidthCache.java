@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+/**
+ * Caches the advance widths of the characters {@link ValueFormatter} produces, so formatted values
+ * can be measured without going through the paint on every frame. The widths are measured again
+ * whenever the text size or typeface of the paint changes.
+ */
+class CharWidthCache {
+
+	private static final String CHARS = "0123456789+-.,";
+
+	private final Paint mPaint;
+	private final float[] mWidths = new float[CHARS.length()];
+	private float mTextSize = -1;
+	private Typeface mTypeface;
+
+	CharWidthCache(final Paint paint) {
+		mPaint = paint;
+	}
+
+	float measure(final char[] text, final int count) {
+		if (mPaint.getTextSize() != mTextSize || mPaint.getTypeface() != mTypeface) {
+			mTextSize = mPaint.getTextSize();
+			mTypeface = mPaint.getTypeface();
+			mPaint.getTextWidths(CHARS, mWidths);
+		}
+		float width = 0;
+		for (int i = 0; i < count; i++) {
+			final int index = CHARS.indexOf(text[i]);
+			if (index < 0) {
+				// Not a cached character, e.g. an unusual decimal separator
+				return mPaint.measureText(text, 0, count);
+			}
+			width += mWidths[index];
+		}
+		return width;
+	}
+}
@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import android.annotation.TargetApi;
+import android.view.Choreographer;
+
+/**
+ * {@link FrameClock} delivering vsync frame times from the {@link Choreographer} of the thread it
+ * was created on.
+ */
+@TargetApi(16)
+public class ChoreographerFrameClock implements FrameClock {
+
+	private final Choreographer mChoreographer;
+	private final Map<Callback, Choreographer.FrameCallback> mFrameCallbacks = new HashMap<Callback, Choreographer.FrameCallback>();
+
+	public ChoreographerFrameClock() {
+		mChoreographer = Choreographer.getInstance();
+	}
+
+	@Override
+	public long nanoTime() {
+		// Choreographer frame times use the System.nanoTime() time base
+		return System.nanoTime();
+	}
+
+	@Override
+	public void postFrameCallback(final Callback callback) {
+		mChoreographer.postFrameCallback(getFrameCallback(callback));
+	}
+
+	@Override
+	public void removeFrameCallback(final Callback callback) {
+		final Choreographer.FrameCallback frameCallback = mFrameCallbacks.get(callback);
+		if (null != frameCallback) {
+			mChoreographer.removeFrameCallback(frameCallback);
+		}
+	}
+
+	private Choreographer.FrameCallback getFrameCallback(final Callback callback) {
+		Choreographer.FrameCallback frameCallback = mFrameCallbacks.get(callback);
+		if (null == frameCallback) {
+			frameCallback = new Choreographer.FrameCallback() {
+				@Override
+				public void doFrame(final long frameTimeNanos) {
+					callback.doFrame(frameTimeNanos);
+				}
+			};
+			mFrameCallbacks.put(callback, frameCallback);
+		}
+		return frameCallback;
+	}
+}
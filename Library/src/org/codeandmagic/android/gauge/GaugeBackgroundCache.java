@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.graphics.Bitmap;
+
+/**
+ * Process-wide cache of rendered gauge backgrounds. Gauges with the same style and size share one
+ * bitmap. Entries are reference counted; the ones no gauge uses any more are kept in LRU order and
+ * evicted to the {@link GaugeBitmapPool} once the cache grows past its byte budget.
+ */
+public class GaugeBackgroundCache {
+
+	private static GaugeBackgroundCache sInstance;
+
+	public static synchronized GaugeBackgroundCache getInstance() {
+		if (null == sInstance) {
+			sInstance = new GaugeBackgroundCache(Runtime.getRuntime().maxMemory() / 8);
+		}
+		return sInstance;
+	}
+
+	/**
+	 * Identifies a background by the style attributes it was rendered from and its pixel size.
+	 */
+	public static final class Key {
+		private final int[] mStyle;
+		private final int mWidth;
+		private final int mHeight;
+		private final int mHashCode;
+
+		public Key(final int[] style, final int width, final int height) {
+			mStyle = style;
+			mWidth = width;
+			mHeight = height;
+			mHashCode = 31 * (31 * Arrays.hashCode(style) + width) + height;
+		}
+
+		public int getWidth() {
+			return mWidth;
+		}
+
+		public int getHeight() {
+			return mHeight;
+		}
+
+		@Override
+		public int hashCode() {
+			return mHashCode;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			final Key key = (Key) o;
+			return mHashCode == key.mHashCode && mWidth == key.mWidth && mHeight == key.mHeight
+					&& Arrays.equals(mStyle, key.mStyle);
+		}
+	}
+
+	private static final class Entry {
+		private final Bitmap mBitmap;
+		private int mRefCount;
+
+		private Entry(final Bitmap bitmap) {
+			mBitmap = bitmap;
+		}
+	}
+
+	// Access ordered, so iteration starts at the least recently used entry
+	private final LinkedHashMap<Key, Entry> mEntries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+	private long mMaxBytes;
+	private long mBytes;
+
+	public GaugeBackgroundCache(final long maxBytes) {
+		mMaxBytes = maxBytes;
+	}
+
+	/**
+	 * @return the cached background, with its reference count increased, or null
+	 */
+	public synchronized Bitmap acquire(final Key key) {
+		final Entry entry = mEntries.get(key);
+		if (null == entry) {
+			return null;
+		}
+		entry.mRefCount++;
+		return entry.mBitmap;
+	}
+
+	/**
+	 * Adds a freshly rendered background, acquired once by the caller. If another gauge cached the
+	 * same key in the meantime, that bitmap is acquired and returned instead.
+	 */
+	public synchronized Bitmap put(final Key key, final Bitmap bitmap) {
+		Entry entry = mEntries.get(key);
+		if (null == entry) {
+			entry = new Entry(bitmap);
+			mEntries.put(key, entry);
+			mBytes += getBytes(bitmap);
+		}
+		entry.mRefCount++;
+		trimToSize();
+		return entry.mBitmap;
+	}
+
+	public synchronized void release(final Key key) {
+		final Entry entry = mEntries.get(key);
+		if (null != entry && entry.mRefCount > 0) {
+			entry.mRefCount--;
+			trimToSize();
+		}
+	}
+
+	public synchronized void setMaxBytes(final long maxBytes) {
+		mMaxBytes = maxBytes;
+		trimToSize();
+	}
+
+	public synchronized long getMaxBytes() {
+		return mMaxBytes;
+	}
+
+	public synchronized long getBytes() {
+		return mBytes;
+	}
+
+	/**
+	 * Drops every background that isn't in use.
+	 */
+	public synchronized void evictUnused() {
+		trimToSize(0);
+	}
+
+	private void trimToSize() {
+		trimToSize(mMaxBytes);
+	}
+
+	private void trimToSize(final long maxBytes) {
+		final Iterator<Map.Entry<Key, Entry>> iterator = mEntries.entrySet().iterator();
+		while (mBytes > maxBytes && iterator.hasNext()) {
+			final Entry entry = iterator.next().getValue();
+			if (0 == entry.mRefCount) {
+				iterator.remove();
+				mBytes -= getBytes(entry.mBitmap);
+				GaugeBitmapPool.getInstance().put(entry.mBitmap);
+			}
+		}
+	}
+
+	private static long getBytes(final Bitmap bitmap) {
+		return (long) bitmap.getRowBytes() * bitmap.getHeight();
+	}
+}
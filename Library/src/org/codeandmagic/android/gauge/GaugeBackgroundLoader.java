@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+/**
+ * Renders backgrounds into the {@link GaugeBackgroundCache} on a worker thread. Gauges asking for a
+ * background that is already being rendered wait for that one instead of rendering their own.
+ * Everything but the rendering itself happens on the main thread.
+ */
+final class GaugeBackgroundLoader {
+
+	interface Callback {
+		/**
+		 * Called on the main thread once the background is in the cache, or failed to render, in
+		 * which case acquiring it returns null.
+		 */
+		void onBackgroundLoaded(GaugeBackgroundCache.Key key, long renderNanos);
+	}
+
+	private static final HashMap<GaugeBackgroundCache.Key, ArrayList<Callback>> sPending = new HashMap<GaugeBackgroundCache.Key, ArrayList<Callback>>();
+	private static ExecutorService sExecutor;
+	private static Handler sHandler;
+
+	private GaugeBackgroundLoader() {
+	}
+
+	/**
+	 * Starts rendering the background, unless it is being rendered already, and calls back once it
+	 * is cached.
+	 *
+	 * @param format one of the GaugeView.BACKGROUND_FORMAT_ constants
+	 */
+	static void load(final GaugeBackgroundCache.Key key, final GaugeStyle style, final int format,
+			final Callback callback) {
+		ArrayList<Callback> callbacks = sPending.get(key);
+		if (null != callbacks) {
+			callbacks.add(callback);
+			return;
+		}
+		callbacks = new ArrayList<Callback>(2);
+		callbacks.add(callback);
+		sPending.put(key, callbacks);
+
+		if (null == sExecutor) {
+			sHandler = new Handler(Looper.getMainLooper());
+			// One thread is enough: backgrounds are rendered once and shared, and more would only
+			// compete with the main thread for the CPU
+			sExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					final Thread thread = new Thread(runnable, "GaugeBackgroundLoader");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		sExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+				final long start = System.nanoTime();
+				boolean cached = false;
+				try {
+					final int width = key.getWidth();
+					final int height = key.getHeight();
+					final Bitmap bitmap = new GaugeBackgroundPainter(style, Math.min(width, height)).render(width,
+							height, format);
+					// Acquired once here, so it stays cached until every callback had its turn
+					if (GaugeBackgroundCache.getInstance().put(key, bitmap) != bitmap) {
+						GaugeBitmapPool.getInstance().put(bitmap);
+					}
+					cached = true;
+				} catch (final RuntimeException e) {
+					// Left to the main thread, which renders it again and throws there, instead of
+					// the uncaught exception handler killing the process from here
+				} catch (final OutOfMemoryError e) {
+					// Same, the main thread may well manage once this bitmap is gone
+				} finally {
+					final boolean loaded = cached;
+					final long renderNanos = System.nanoTime() - start;
+					sHandler.post(new Runnable() {
+						@Override
+						public void run() {
+							deliver(key, loaded, renderNanos);
+						}
+					});
+				}
+			}
+		});
+	}
+
+	/**
+	 * The callback won't be called for the key any more. The rendering itself goes on, other gauges
+	 * are likely to want the background too.
+	 */
+	static void cancel(final GaugeBackgroundCache.Key key, final Callback callback) {
+		final ArrayList<Callback> callbacks = sPending.get(key);
+		if (null != callbacks) {
+			callbacks.remove(callback);
+		}
+	}
+
+	private static void deliver(final GaugeBackgroundCache.Key key, final boolean loaded, final long renderNanos) {
+		final ArrayList<Callback> callbacks = sPending.remove(key);
+		for (int i = 0; i < callbacks.size(); i++) {
+			callbacks.get(i).onBackgroundLoaded(key, renderNanos);
+		}
+		if (loaded) {
+			GaugeBackgroundCache.getInstance().release(key);
+		}
+	}
+}
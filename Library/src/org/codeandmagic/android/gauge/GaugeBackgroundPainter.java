@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ComposeShader;
+import android.graphics.LinearGradient;
+import android.graphics.Paint;
+import android.graphics.Paint.Align;
+import android.graphics.Picture;
+import android.graphics.PorterDuff;
+import android.graphics.RadialGradient;
+import android.graphics.Shader.TileMode;
+import android.graphics.Typeface;
+import android.os.Build;
+
+/**
+ * Renders the background of a gauge: the rims, the face and the scale. The paints are created for
+ * one style and size and never modified afterwards, and a painter only touches its own paints and
+ * the immutable style, so it can render on any thread.
+ */
+final class GaugeBackgroundPainter {
+
+	// Pictures are recorded this much larger than the unit square, as their bounds are whole units
+	static final float PICTURE_SCALE = 1000.0f;
+
+	private final GaugeStyle mStyle;
+	// Null if the style has no outer rim
+	private final RimTexture mRimTexture;
+
+	private Paint mOuterShadowPaint;
+	private Paint mOuterBorderPaint;
+	private Paint mOuterRimPaint;
+	private Paint mInnerRimPaint;
+	private Paint mInnerRimBorderLightPaint;
+	private Paint mInnerRimBorderDarkPaint;
+	private final Paint mFacePaint;
+	private final Paint mFaceBorderPaint;
+	private final Paint mFaceShadowPaint;
+	private Paint[] mRangePaints;
+
+	/**
+	 * @param size the size of the gauge in pixels, which decides how detailed the rim texture is
+	 */
+	GaugeBackgroundPainter(final GaugeStyle style, final float size) {
+		mStyle = style;
+		if (style.mShowOuterShadow) {
+			mOuterShadowPaint = getDefaultOuterShadowPaint();
+		}
+		if (style.mShowOuterBorder) {
+			mOuterBorderPaint = getDefaultOuterBorderPaint();
+		}
+		if (style.mShowOuterRim) {
+			mRimTexture = RimTexture.obtain(style.mResources, size);
+			mOuterRimPaint = getDefaultOuterRimPaint();
+		} else {
+			mRimTexture = null;
+		}
+		if (style.mShowInnerRim) {
+			mInnerRimPaint = getDefaultInnerRimPaint();
+			mInnerRimBorderLightPaint = getDefaultInnerRimBorderLightPaint();
+			mInnerRimBorderDarkPaint = getDefaultInnerRimBorderDarkPaint();
+		}
+		if (style.mShowRanges) {
+			setDefaultScaleRangePaints();
+		}
+
+		mFacePaint = getDefaultFacePaint();
+		mFaceBorderPaint = getDefaultFaceBorderPaint();
+		mFaceShadowPaint = getDefaultFaceShadowPaint();
+	}
+
+	/**
+	 * @return whether this painter can render the style at that size with the right detail
+	 */
+	boolean canPaint(final GaugeStyle style, final float size) {
+		return style == mStyle
+				&& (null == mRimTexture || mRimTexture.getSampleSize() == RimTexture.getSampleSize(mStyle.mResources, size));
+	}
+
+	/**
+	 * Renders the background centered in a width x height bitmap taken from the
+	 * {@link GaugeBitmapPool}. Pooled bitmaps may be larger than needed, only the top left corner is
+	 * used.
+	 *
+	 * @param format one of the GaugeView.BACKGROUND_FORMAT_ constants
+	 */
+	Bitmap render(final int width, final int height, final int format) {
+		final GaugeBitmapPool pool = GaugeBitmapPool.getInstance();
+		// RGB_565 has no alpha: erased to transparent it is black, and so are the corners
+		final Bitmap.Config config = GaugeView.BACKGROUND_FORMAT_RGB_565 == format ? Bitmap.Config.RGB_565
+				: Bitmap.Config.ARGB_8888;
+		Bitmap background = pool.obtain(width, height, config);
+
+		final float scale = Math.min(width, height);
+		final Canvas canvas = new Canvas(background);
+		canvas.translate((width - scale) / 2, (height - scale) / 2);
+		canvas.scale(scale, scale);
+		draw(canvas);
+
+		if (GaugeView.BACKGROUND_FORMAT_HARDWARE == format && Build.VERSION.SDK_INT >= 26) {
+			// Hardware bitmaps keep the pixels in graphics memory only, but they can't be drawn
+			// into, so upload the rendered one and give the software copy back to the pool
+			final Bitmap hardware = background.copy(Bitmap.Config.valueOf("HARDWARE"), false);
+			if (null != hardware) {
+				pool.put(background);
+				background = hardware;
+			}
+		}
+		return background;
+	}
+
+	/**
+	 * Records the background as drawing commands, {@link #PICTURE_SCALE} times the size of the
+	 * unit square. It takes as little memory as the commands do, and replays sharp at any size.
+	 */
+	Picture record() {
+		final Picture picture = new Picture();
+		final Canvas canvas = picture.beginRecording((int) PICTURE_SCALE, (int) PICTURE_SCALE);
+		canvas.scale(PICTURE_SCALE, PICTURE_SCALE);
+		draw(canvas);
+		picture.endRecording();
+		return picture;
+	}
+
+	/**
+	 * Draws the background on a canvas scaled to the unit square.
+	 */
+	void draw(final Canvas canvas) {
+		drawRim(canvas);
+		drawFace(canvas);
+
+		if (mStyle.mShowRanges) {
+			drawScale(canvas);
+		}
+	}
+
+	private void drawRim(final Canvas canvas) {
+		if (mStyle.mShowOuterShadow) {
+			canvas.drawOval(mStyle.mOuterShadowRect, mOuterShadowPaint);
+		}
+		if (mStyle.mShowOuterBorder) {
+			canvas.drawOval(mStyle.mOuterBorderRect, mOuterBorderPaint);
+		}
+		if (mStyle.mShowOuterRim) {
+			canvas.drawOval(mStyle.mOuterRimRect, mOuterRimPaint);
+		}
+		if (mStyle.mShowInnerRim) {
+			canvas.drawOval(mStyle.mInnerRimRect, mInnerRimPaint);
+			canvas.drawOval(mStyle.mInnerRimRect, mInnerRimBorderLightPaint);
+			canvas.drawOval(mStyle.mInnerRimBorderRect, mInnerRimBorderDarkPaint);
+		}
+	}
+
+	private void drawFace(final Canvas canvas) {
+		// Draw the face gradient
+		canvas.drawOval(mStyle.mFaceRect, mFacePaint);
+		// Draw the face border
+		canvas.drawOval(mStyle.mFaceRect, mFaceBorderPaint);
+		// Draw the inner face shadow
+		canvas.drawOval(mStyle.mFaceRect, mFaceShadowPaint);
+	}
+
+	private void drawScale(final Canvas canvas) {
+		final int length = mRangePaints.length;
+		for (int i = 0; i < length; i++) {
+			canvas.drawLines(mStyle.mTickLines[i], mRangePaints[i]);
+			canvas.drawPath(mStyle.mLabelPaths[i], mRangePaints[i]);
+		}
+	}
+
+	private Paint getDefaultOuterShadowPaint() {
+		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		paint.setStyle(Paint.Style.FILL);
+		paint.setShader(new RadialGradient(GaugeView.CENTER, GaugeView.CENTER, mStyle.mOuterShadowRect.width() / 2.0f,
+				GaugeView.OUTER_SHADOW_COLORS, GaugeView.OUTER_SHADOW_POS, TileMode.MIRROR));
+		return paint;
+	}
+
+	private Paint getDefaultOuterBorderPaint() {
+		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		paint.setStyle(Paint.Style.FILL);
+		paint.setColor(Color.argb(245, 0, 0, 0));
+		return paint;
+	}
+
+	private Paint getDefaultOuterRimPaint() {
+		// Use a linear gradient to create the 3D effect
+		final LinearGradient verticalGradient = new LinearGradient(mStyle.mOuterRimRect.left, mStyle.mOuterRimRect.top, mStyle.mOuterRimRect.left,
+				mStyle.mOuterRimRect.bottom, Color.rgb(255, 255, 255), Color.rgb(84, 90, 100), TileMode.REPEAT);
+
+		// Use the shared texture for the metallic style, with as much detail as this size needs
+		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		paint.setShader(new ComposeShader(verticalGradient, mRimTexture.getShader(), PorterDuff.Mode.MULTIPLY));
+		paint.setFilterBitmap(true);
+		return paint;
+	}
+
+	private Paint getDefaultInnerRimPaint() {
+		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		paint.setShader(new LinearGradient(mStyle.mInnerRimRect.left, mStyle.mInnerRimRect.top, mStyle.mInnerRimRect.left, mStyle.mInnerRimRect.bottom, new int[]{
+				Color.argb(255, 68, 73, 80), Color.argb(255, 91, 97, 105), Color.argb(255, 178, 180, 183), Color.argb(255, 188, 188, 190),
+				Color.argb(255, 84, 90, 100), Color.argb(255, 137, 137, 137)}, new float[]{0, 0.1f, 0.2f, 0.4f, 0.8f, 1},
+				TileMode.CLAMP));
+		return paint;
+	}
+
+	private Paint getDefaultInnerRimBorderLightPaint() {
+		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		paint.setStyle(Paint.Style.STROKE);
+		paint.setColor(Color.argb(100, 255, 255, 255));
+		paint.setStrokeWidth(0.005f);
+		return paint;
+	}
+
+	private Paint getDefaultInnerRimBorderDarkPaint() {
+		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		paint.setStyle(Paint.Style.STROKE);
+		paint.setColor(Color.argb(100, 81, 84, 89));
+		paint.setStrokeWidth(0.005f);
+		return paint;
+	}
+
+	private Paint getDefaultFacePaint() {
+		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		paint.setShader(new RadialGradient(0.5f, 0.5f, mStyle.mFaceRect.width() / 2, new int[]{Color.rgb(50, 132, 206), Color.rgb(36, 89, 162),
+				Color.rgb(27, 59, 131)}, new float[]{0.5f, 0.96f, 0.99f}, TileMode.MIRROR));
+		return paint;
+	}
+
+	private Paint getDefaultFaceBorderPaint() {
+		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		paint.setStyle(Paint.Style.STROKE);
+		paint.setColor(Color.argb(100, 81, 84, 89));
+		paint.setStrokeWidth(0.005f);
+		return paint;
+	}
+
+	private Paint getDefaultFaceShadowPaint() {
+		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		paint.setShader(new RadialGradient(0.5f, 0.5f, mStyle.mFaceRect.width() / 2.0f, new int[]{Color.argb(60, 40, 96, 170),
+				Color.argb(80, 15, 34, 98), Color.argb(120, 0, 0, 0), Color.argb(140, 0, 0, 0)},
+				new float[]{0.60f, 0.85f, 0.96f, 0.99f}, TileMode.MIRROR));
+		return paint;
+	}
+
+	private void setDefaultScaleRangePaints() {
+		final int length = mStyle.mRangeValues.length;
+		mRangePaints = new Paint[length];
+		for (int i = 0; i < length; i++) {
+			mRangePaints[i] = new Paint(Paint.LINEAR_TEXT_FLAG | Paint.ANTI_ALIAS_FLAG);
+			mRangePaints[i].setColor(mStyle.mRangeColors[i]);
+			mRangePaints[i].setStyle(Paint.Style.STROKE);
+			mRangePaints[i].setStrokeWidth(0.005f);
+			mRangePaints[i].setTextSize(GaugeRenderer.RANGE_TEXT_SIZE);
+			mRangePaints[i].setTypeface(Typeface.SANS_SERIF);
+			mRangePaints[i].setTextAlign(Align.CENTER);
+			mRangePaints[i].setShadowLayer(0.005f, 0.002f, 0.002f, mStyle.mTextShadowColor);
+		}
+	}
+}
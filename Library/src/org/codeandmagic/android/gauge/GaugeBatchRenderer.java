@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+
+/**
+ * Renders gauge images for many values on a pool of worker threads, e.g. for reports.
+ * <p>
+ * Every worker draws with its own copy of the {@link GaugeRenderer} into its own bitmap, which is
+ * reused from one value to the next. The background is rendered once and shared by all workers
+ * through the {@link GaugeBackgroundCache}. A prototype with
+ * {@link GaugeView#BACKGROUND_FORMAT_HARDWARE} is rendered with
+ * {@link GaugeView#BACKGROUND_FORMAT_ARGB_8888} instead, as the workers draw in software.
+ */
+public class GaugeBatchRenderer {
+
+	public interface Callback {
+		/**
+		 * Called on a worker thread for every rendered value. The bitmap is reused for the next
+		 * value once this returns, so it has to be consumed (compressed, copied) in here.
+		 *
+		 * @param index the index of the value in the batch
+		 */
+		void onRendered(int index, float value, Bitmap bitmap);
+	}
+
+	private final GaugeRenderer mPrototype;
+	private final int mWidth;
+	private final int mHeight;
+	private final Bitmap.Config mConfig;
+	private final ExecutorService mExecutor;
+	private final boolean mOwnsExecutor;
+	private final int mParallelism;
+
+	// Idle workers, each with its own renderer and bitmap
+	private final LinkedBlockingQueue<Worker> mWorkers = new LinkedBlockingQueue<Worker>();
+
+	/**
+	 * Renders on a new pool with one thread per core.
+	 */
+	public GaugeBatchRenderer(final GaugeRenderer prototype, final int width, final int height) {
+		this(prototype, width, height, Bitmap.Config.ARGB_8888, Executors.newFixedThreadPool(Runtime.getRuntime()
+				.availableProcessors()), Runtime.getRuntime().availableProcessors(), true);
+	}
+
+	/**
+	 * Renders on the given executor, which is not shut down by {@link #shutdown()}.
+	 *
+	 * @param parallelism how many values are rendered at once, at most the number of threads of
+	 *            the executor
+	 */
+	public GaugeBatchRenderer(final GaugeRenderer prototype, final int width, final int height,
+			final Bitmap.Config config, final ExecutorService executor, final int parallelism) {
+		this(prototype, width, height, config, executor, parallelism, false);
+	}
+
+	private GaugeBatchRenderer(final GaugeRenderer prototype, final int width, final int height,
+			final Bitmap.Config config, final ExecutorService executor, final int parallelism, final boolean ownsExecutor) {
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("The images must be at least 1x1.");
+		}
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("The parallelism must be at least 1.");
+		}
+		// Copied right away, so the prototype can keep being used on its own thread
+		mPrototype = new GaugeRenderer(prototype);
+		if (GaugeView.BACKGROUND_FORMAT_HARDWARE == mPrototype.getBackgroundFormat()) {
+			// Workers draw into bitmaps, which can't draw hardware bitmaps
+			mPrototype.setBackgroundFormat(GaugeView.BACKGROUND_FORMAT_ARGB_8888);
+		}
+		mWidth = width;
+		mHeight = height;
+		mConfig = config;
+		mExecutor = executor;
+		mParallelism = parallelism;
+		mOwnsExecutor = ownsExecutor;
+	}
+
+	public int getWidth() {
+		return mWidth;
+	}
+
+	public int getHeight() {
+		return mHeight;
+	}
+
+	/**
+	 * Renders every value and waits until all of them are done. Batches may be rendered from
+	 * several threads at once, they share the workers.
+	 *
+	 * @throws RuntimeException if the callback threw, rendering is stopped at the first failure
+	 */
+	public void render(final float[] values, final Callback callback) throws InterruptedException {
+		final int count = values.length;
+		final int tasks = Math.min(mParallelism, count);
+		final List<Callable<Void>> chunks = new ArrayList<Callable<Void>>(tasks);
+		for (int t = 0; t < tasks; t++) {
+			// Contiguous chunks, so every worker goes through its values in order
+			final int start = (int) ((long) count * t / tasks);
+			final int end = (int) ((long) count * (t + 1) / tasks);
+			chunks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					final Worker worker = obtainWorker();
+					try {
+						for (int i = start; i < end; i++) {
+							if (Thread.interrupted()) {
+								throw new InterruptedException();
+							}
+							worker.render(values[i]);
+							callback.onRendered(i, values[i], worker.mBitmap);
+						}
+					} finally {
+						mWorkers.offer(worker);
+					}
+					return null;
+				}
+			});
+		}
+
+		final List<Future<Void>> results = mExecutor.invokeAll(chunks);
+		for (final Future<Void> result : results) {
+			try {
+				result.get();
+			} catch (final ExecutionException e) {
+				final Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				} else if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new RuntimeException(cause);
+			}
+		}
+	}
+
+	private Worker obtainWorker() {
+		final Worker worker = mWorkers.poll();
+		if (null != worker) {
+			return worker;
+		}
+		synchronized (mPrototype) {
+			return new Worker(new GaugeRenderer(mPrototype));
+		}
+	}
+
+	/**
+	 * Gives the bitmaps of the workers back and, if it was created here, shuts the executor down.
+	 */
+	public void shutdown() {
+		if (mOwnsExecutor) {
+			mExecutor.shutdown();
+		}
+		Worker worker;
+		while (null != (worker = mWorkers.poll())) {
+			worker.release();
+		}
+		mPrototype.release();
+	}
+
+	private final class Worker {
+		private final GaugeRenderer mRenderer;
+		private final Bitmap mBitmap;
+		private final Canvas mCanvas;
+
+		Worker(final GaugeRenderer renderer) {
+			mRenderer = renderer;
+			mRenderer.setSize(mWidth, mHeight);
+			mBitmap = Bitmap.createBitmap(mWidth, mHeight, mConfig);
+			mCanvas = new Canvas(mBitmap);
+		}
+
+		void render(final float value) {
+			mBitmap.eraseColor(Color.TRANSPARENT);
+			mRenderer.draw(mCanvas, mRenderer.clampValue(value));
+		}
+
+		void release() {
+			mRenderer.release();
+			mBitmap.recycle();
+		}
+	}
+}
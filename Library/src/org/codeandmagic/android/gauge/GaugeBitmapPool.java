@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+/**
+ * Pool of mutable bitmaps backgrounds can be rendered into. A pooled bitmap is handed out for any
+ * size it can hold, so callers must only use its top left {@code width x height} region. Hit and
+ * miss counters are kept to help tuning the byte budget.
+ */
+public class GaugeBitmapPool {
+
+	private static GaugeBitmapPool sInstance;
+
+	public static synchronized GaugeBitmapPool getInstance() {
+		if (null == sInstance) {
+			sInstance = new GaugeBitmapPool(Runtime.getRuntime().maxMemory() / 16);
+		}
+		return sInstance;
+	}
+
+	// Don't hand out bitmaps that waste more than this factor of their area
+	private static final int MAX_AREA_FACTOR = 2;
+
+	// Oldest first
+	private final LinkedList<Bitmap> mBitmaps = new LinkedList<Bitmap>();
+	private long mMaxBytes;
+	private long mBytes;
+	private int mHitCount;
+	private int mMissCount;
+
+	public GaugeBitmapPool(final long maxBytes) {
+		mMaxBytes = maxBytes;
+	}
+
+	/**
+	 * @return a cleared bitmap at least as large as requested, from the pool if possible
+	 */
+	public Bitmap obtain(final int width, final int height, final Bitmap.Config config) {
+		final Bitmap pooled = take(width, height, config);
+		if (null != pooled) {
+			pooled.eraseColor(Color.TRANSPARENT);
+			return pooled;
+		}
+		return Bitmap.createBitmap(width, height, config);
+	}
+
+	private synchronized Bitmap take(final int width, final int height, final Bitmap.Config config) {
+		Bitmap best = null;
+		long bestArea = (long) width * height * MAX_AREA_FACTOR;
+		for (final Bitmap bitmap : mBitmaps) {
+			final long area = (long) bitmap.getWidth() * bitmap.getHeight();
+			if (bitmap.getConfig() == config && bitmap.getWidth() >= width && bitmap.getHeight() >= height && area <= bestArea) {
+				best = bitmap;
+				bestArea = area;
+			}
+		}
+		if (null == best) {
+			mMissCount++;
+			return null;
+		}
+		mHitCount++;
+		mBitmaps.remove(best);
+		mBytes -= getBytes(best);
+		return best;
+	}
+
+	/**
+	 * Hands a bitmap back for reuse. Immutable bitmaps can't be rendered into and are recycled.
+	 */
+	public synchronized void put(final Bitmap bitmap) {
+		if (bitmap.isRecycled()) {
+			return;
+		}
+		if (!bitmap.isMutable() || getBytes(bitmap) > mMaxBytes) {
+			bitmap.recycle();
+			return;
+		}
+		mBitmaps.addLast(bitmap);
+		mBytes += getBytes(bitmap);
+		trimToSize(mMaxBytes);
+	}
+
+	public synchronized void setMaxBytes(final long maxBytes) {
+		mMaxBytes = maxBytes;
+		trimToSize(mMaxBytes);
+	}
+
+	public synchronized long getMaxBytes() {
+		return mMaxBytes;
+	}
+
+	public synchronized long getBytes() {
+		return mBytes;
+	}
+
+	public synchronized int getHitCount() {
+		return mHitCount;
+	}
+
+	public synchronized int getMissCount() {
+		return mMissCount;
+	}
+
+	public synchronized void clear() {
+		trimToSize(0);
+	}
+
+	private void trimToSize(final long maxBytes) {
+		final Iterator<Bitmap> iterator = mBitmaps.iterator();
+		while (mBytes > maxBytes && iterator.hasNext()) {
+			final Bitmap bitmap = iterator.next();
+			iterator.remove();
+			mBytes -= getBytes(bitmap);
+			bitmap.recycle();
+		}
+	}
+
+	private static long getBytes(final Bitmap bitmap) {
+		return (long) bitmap.getRowBytes() * bitmap.getHeight();
+	}
+}
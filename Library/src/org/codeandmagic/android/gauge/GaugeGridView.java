@@ -0,0 +1,530 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+import java.util.Arrays;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Bundle;
+import android.os.Parcelable;
+import android.util.AttributeSet;
+import android.util.SparseArray;
+import android.view.View;
+
+/**
+ * Lays out a grid of dial gauges inside a single view. Cells of the same style share one
+ * {@link GaugeRenderer}, so their paints, paths and background bitmap exist once, all needles are
+ * advanced from a single frame callback and the whole grid is drawn in one {@link #onDraw} pass.
+ * <p>
+ * Cells use the gauge attributes of the grid itself unless they are given a style of their own,
+ * see {@link #setCellStyle}.
+ */
+public class GaugeGridView extends View implements FrameClock.Callback {
+
+	public static final int GRID_COLUMNS = 4;
+
+	private int mColumns;
+	private int mCellSpacing;
+	private int mCellWidth;
+	private int mCellHeight;
+
+	// One renderer per style resource, 0 being the style of the grid itself
+	private final SparseArray<GaugeRenderer> mRenderers = new SparseArray<GaugeRenderer>();
+
+	private int mCellCount;
+	private int[] mCellStyles = new int[0];
+	private GaugeRenderer[] mCellRenderers = new GaugeRenderer[0];
+	private NeedlePhysics[] mCellPhysics = new NeedlePhysics[0];
+	private boolean[] mCellNeedleInitialized = new boolean[0];
+	private NeedleMotion mNeedleMotion = NeedlePhysics.DEFAULT_MOTION;
+
+	private FrameClock mClock = HandlerFrameClock.create();
+	private long mLastFrameTime;
+	private boolean mRunning;
+
+	// Not on screen: the needles don't move until the grid is shown again
+	private boolean mSuspended = true;
+	// The backgrounds went back to the shared cache on detach, got again on the next draw
+	private boolean mReleased;
+
+	private final Rect mCellDirtyRect = new Rect();
+	private final Rect mDirtyRect = new Rect();
+
+	public GaugeGridView(final Context context, final AttributeSet attrs, final int defStyle) {
+		super(context, attrs, defStyle);
+		final GaugeRenderer renderer = new GaugeRenderer(context, attrs, defStyle, 0);
+		if (!isInEditMode()) {
+			renderer.setAsyncBackground(mBackgroundListener);
+		}
+		mRenderers.put(0, renderer);
+
+		final TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.GaugeGridView, defStyle, 0);
+		mColumns = Math.max(1, a.getInteger(R.styleable.GaugeGridView_gridColumns, GRID_COLUMNS));
+		mCellSpacing = a.getDimensionPixelSize(R.styleable.GaugeGridView_gridCellSpacing, 0);
+		final int cells = a.getInteger(R.styleable.GaugeGridView_gridCells, 0);
+		a.recycle();
+
+		setCellCount(cells);
+	}
+
+	public GaugeGridView(final Context context, final AttributeSet attrs) {
+		this(context, attrs, 0);
+	}
+
+	public GaugeGridView(final Context context) {
+		this(context, null, 0);
+	}
+
+	// Backgrounds are rendered on a worker thread, the cells show a placeholder until then
+	private final GaugeRenderer.BackgroundListener mBackgroundListener = new GaugeRenderer.BackgroundListener() {
+		@Override
+		public void onBackgroundReady(final GaugeRenderer renderer) {
+			invalidate();
+		}
+	};
+
+	/**
+	 * Adds or removes cells at the end of the grid. New cells use the style of the grid.
+	 */
+	public void setCellCount(final int count) {
+		if (count < mCellCount) {
+			for (int i = count; i < mCellCount; i++) {
+				mCellRenderers[i] = null;
+				mCellPhysics[i] = null;
+			}
+			mCellCount = count;
+			releaseUnusedRenderers();
+		} else if (count > mCellCount) {
+			if (count > mCellStyles.length) {
+				final int capacity = Math.max(count, 2 * mCellStyles.length);
+				mCellStyles = Arrays.copyOf(mCellStyles, capacity);
+				mCellNeedleInitialized = Arrays.copyOf(mCellNeedleInitialized, capacity);
+				final GaugeRenderer[] renderers = new GaugeRenderer[capacity];
+				System.arraycopy(mCellRenderers, 0, renderers, 0, mCellCount);
+				mCellRenderers = renderers;
+				final NeedlePhysics[] physics = new NeedlePhysics[capacity];
+				System.arraycopy(mCellPhysics, 0, physics, 0, mCellCount);
+				mCellPhysics = physics;
+			}
+			final GaugeRenderer renderer = mRenderers.get(0);
+			for (int i = mCellCount; i < count; i++) {
+				mCellStyles[i] = 0;
+				mCellRenderers[i] = renderer;
+				mCellPhysics[i] = new NeedlePhysics();
+				mCellPhysics[i].setMotion(mNeedleMotion);
+				mCellNeedleInitialized[i] = false;
+			}
+			mCellCount = count;
+		}
+		requestLayout();
+		invalidate();
+	}
+
+	public int getCellCount() {
+		return mCellCount;
+	}
+
+	/**
+	 * Styles a cell with the gauge attributes of a style resource. Cells with the same style share
+	 * the same renderer.
+	 *
+	 * @param styleRes the style, or 0 for the style of the grid
+	 */
+	public void setCellStyle(final int cell, final int styleRes) {
+		checkCell(cell);
+		if (mCellStyles[cell] == styleRes) {
+			return;
+		}
+		GaugeRenderer renderer = mRenderers.get(styleRes);
+		if (null == renderer) {
+			renderer = new GaugeRenderer(getContext(), styleRes);
+			if (!isInEditMode()) {
+				renderer.setAsyncBackground(mBackgroundListener);
+			}
+			renderer.setSize(mCellWidth, mCellHeight);
+			mRenderers.put(styleRes, renderer);
+		}
+		mCellStyles[cell] = styleRes;
+		mCellRenderers[cell] = renderer;
+		releaseUnusedRenderers();
+
+		// The scale may have changed, keep the needle on it
+		final NeedlePhysics physics = mCellPhysics[cell];
+		physics.setState(renderer.clampValue(physics.getValue()), 0.0f, renderer.clampValue(physics.getTarget()));
+		if (!physics.isSettled() && !mSuspended) {
+			start();
+		}
+		final int left = getCellLeft(cell);
+		final int top = getCellTop(cell);
+		invalidate(left, top, left + mCellWidth, top + mCellHeight);
+	}
+
+	public int getCellStyle(final int cell) {
+		checkCell(cell);
+		return mCellStyles[cell];
+	}
+
+	/**
+	 * @return the renderer drawing the cell, shared with all cells of the same style
+	 */
+	public GaugeRenderer getCellRenderer(final int cell) {
+		checkCell(cell);
+		return mCellRenderers[cell];
+	}
+
+	private void releaseUnusedRenderers() {
+		for (int r = mRenderers.size() - 1; r >= 0; r--) {
+			final int styleRes = mRenderers.keyAt(r);
+			if (0 != styleRes && !isStyleUsed(styleRes)) {
+				mRenderers.valueAt(r).release();
+				mRenderers.remove(styleRes);
+			}
+		}
+	}
+
+	private boolean isStyleUsed(final int styleRes) {
+		for (int i = 0; i < mCellCount; i++) {
+			if (mCellStyles[i] == styleRes) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public void setColumnCount(final int columns) {
+		if (columns < 1) {
+			throw new IllegalArgumentException("A grid needs at least one column.");
+		}
+		mColumns = columns;
+		requestLayout();
+		invalidate();
+	}
+
+	public int getColumnCount() {
+		return mColumns;
+	}
+
+	public int getRowCount() {
+		return (mCellCount + mColumns - 1) / mColumns;
+	}
+
+	/**
+	 * @param spacing the space between cells, in pixels
+	 */
+	public void setCellSpacing(final int spacing) {
+		mCellSpacing = spacing;
+		requestLayout();
+		invalidate();
+	}
+
+	public int getCellSpacing() {
+		return mCellSpacing;
+	}
+
+	public void setTargetValue(final int cell, final float value) {
+		checkCell(cell);
+		final NeedlePhysics physics = mCellPhysics[cell];
+		physics.setTarget(mCellRenderers[cell].clampValue(value));
+		if (!mCellNeedleInitialized[cell]) {
+			// Shows the needle the first time, the frame callback repaints it from then on
+			mCellNeedleInitialized[cell] = true;
+			invalidateCell(cell);
+		}
+		if (!physics.isSettled() && !mSuspended) {
+			start();
+		}
+	}
+
+	public float getTargetValue(final int cell) {
+		checkCell(cell);
+		return mCellPhysics[cell].getTarget();
+	}
+
+	/**
+	 * @return the value the needle of the cell currently points at
+	 */
+	public float getValue(final int cell) {
+		checkCell(cell);
+		return mCellPhysics[cell].getValue();
+	}
+
+	private void checkCell(final int cell) {
+		if (cell < 0 || cell >= mCellCount) {
+			throw new IndexOutOfBoundsException("Cell " + cell + " out of " + mCellCount);
+		}
+	}
+
+	/**
+	 * Replaces the source of animation frames, e.g. with a manually driven clock.
+	 */
+	public void setFrameClock(final FrameClock clock) {
+		final boolean running = mRunning;
+		stop();
+		mClock = clock;
+		if (running) {
+			start();
+		}
+	}
+
+	/**
+	 * Changes how the needles of all cells move, {@link NeedlePhysics#DEFAULT_MOTION} by default.
+	 */
+	public void setNeedleMotion(final NeedleMotion motion) {
+		mNeedleMotion = motion;
+		for (int i = 0; i < mCellCount; i++) {
+			mCellPhysics[i].setMotion(motion);
+		}
+	}
+
+	public NeedleMotion getNeedleMotion() {
+		return mNeedleMotion;
+	}
+
+	private void start() {
+		if (!mRunning) {
+			mRunning = true;
+			mLastFrameTime = mClock.nanoTime();
+			mClock.postFrameCallback(this);
+		}
+	}
+
+	private void stop() {
+		if (mRunning) {
+			mRunning = false;
+			mClock.removeFrameCallback(this);
+		}
+	}
+
+	@Override
+	public void doFrame(final long frameTimeNanos) {
+		if (!mRunning) {
+			return;
+		}
+		final float elapsed = (frameTimeNanos - mLastFrameTime) / 1000000000.0f;
+		mLastFrameTime = frameTimeNanos;
+
+		// Every moving needle is advanced here, and everything they swept is repainted at once.
+		// Only in software: from API 21 the hardware renderer redraws the whole grid regardless
+		boolean moving = false;
+		mDirtyRect.setEmpty();
+		for (int i = 0; i < mCellCount; i++) {
+			final NeedlePhysics physics = mCellPhysics[i];
+			if (physics.isSettled()) {
+				continue;
+			}
+			final float previousValue = physics.getValue();
+			if (!physics.advance(elapsed)) {
+				moving = true;
+			}
+			getCellDirtyRect(i, previousValue, physics.getValue());
+			mDirtyRect.union(mCellDirtyRect);
+		}
+
+		if (moving) {
+			mClock.postFrameCallback(this);
+		} else {
+			mRunning = false;
+		}
+		if (!mDirtyRect.isEmpty()) {
+			invalidate(mDirtyRect);
+		}
+	}
+
+	private void invalidateCell(final int cell) {
+		final float value = mCellPhysics[cell].getValue();
+		getCellDirtyRect(cell, value, value);
+		if (!mCellDirtyRect.isEmpty()) {
+			invalidate(mCellDirtyRect);
+		}
+	}
+
+	private void getCellDirtyRect(final int cell, final float fromValue, final float toValue) {
+		final GaugeRenderer renderer = mCellRenderers[cell];
+		if (!renderer.getDirtyRect(fromValue, toValue, mCellNeedleInitialized[cell], mCellDirtyRect)) {
+			mCellDirtyRect.set(0, 0, mCellWidth, mCellHeight);
+		}
+		mCellDirtyRect.offset(getCellLeft(cell), getCellTop(cell));
+	}
+
+	private int getCellLeft(final int cell) {
+		return getPaddingLeft() + (cell % mColumns) * (mCellWidth + mCellSpacing);
+	}
+
+	private int getCellTop(final int cell) {
+		return getPaddingTop() + (cell / mColumns) * (mCellHeight + mCellSpacing);
+	}
+
+	@Override
+	protected void onAttachedToWindow() {
+		super.onAttachedToWindow();
+		updateSuspended();
+	}
+
+	/**
+	 * Stops the needles and gives the backgrounds and needle sprites of all cells back to the
+	 * shared cache and pool.
+	 */
+	@Override
+	protected void onDetachedFromWindow() {
+		super.onDetachedFromWindow();
+		setSuspended(true);
+		for (int r = 0; r < mRenderers.size(); r++) {
+			mRenderers.valueAt(r).release();
+		}
+		mReleased = true;
+	}
+
+	@Override
+	protected void onWindowVisibilityChanged(final int visibility) {
+		super.onWindowVisibilityChanged(visibility);
+		updateSuspended();
+	}
+
+	@Override
+	protected void onVisibilityChanged(final View changedView, final int visibility) {
+		super.onVisibilityChanged(changedView, visibility);
+		updateSuspended();
+	}
+
+	private void updateSuspended() {
+		if (null == mClock) {
+			// onVisibilityChanged() is called from the View constructor, before ours has run
+			return;
+		}
+		setSuspended(!isShown() || VISIBLE != getWindowVisibility());
+	}
+
+	/**
+	 * While the grid can't be seen no needle is animated, and once it can they are all put straight
+	 * on their latest values.
+	 */
+	private void setSuspended(final boolean suspended) {
+		if (suspended == mSuspended) {
+			return;
+		}
+		mSuspended = suspended;
+		if (suspended) {
+			stop();
+			return;
+		}
+		for (int i = 0; i < mCellCount; i++) {
+			final NeedlePhysics physics = mCellPhysics[i];
+			if (!physics.isSettled()) {
+				physics.snapTo(physics.getTarget());
+			}
+		}
+		invalidate();
+	}
+
+	@Override
+	protected void onMeasure(final int widthMeasureSpec, final int heightMeasureSpec) {
+		// Square cells of the default gauge size, unless told otherwise
+		final int columns = mColumns;
+		final int rows = Math.max(1, getRowCount());
+		final int horizontalPadding = getPaddingLeft() + getPaddingRight() + (columns - 1) * mCellSpacing;
+		final int verticalPadding = getPaddingTop() + getPaddingBottom() + (rows - 1) * mCellSpacing;
+
+		final int width = resolveSize(columns * GaugeView.SIZE + horizontalPadding, widthMeasureSpec);
+		final int cellSize = Math.max(0, (width - horizontalPadding) / columns);
+		final int height = resolveSize(rows * cellSize + verticalPadding, heightMeasureSpec);
+		setMeasuredDimension(width, height);
+	}
+
+	@Override
+	protected void onLayout(final boolean changed, final int left, final int top, final int right, final int bottom) {
+		final int rows = Math.max(1, getRowCount());
+		final int width = right - left - getPaddingLeft() - getPaddingRight() - (mColumns - 1) * mCellSpacing;
+		final int height = bottom - top - getPaddingTop() - getPaddingBottom() - (rows - 1) * mCellSpacing;
+		final int cellWidth = Math.max(0, width / mColumns);
+		final int cellHeight = Math.max(0, height / rows);
+		if (cellWidth != mCellWidth || cellHeight != mCellHeight) {
+			mCellWidth = cellWidth;
+			mCellHeight = cellHeight;
+			for (int r = 0; r < mRenderers.size(); r++) {
+				mRenderers.valueAt(r).setSize(cellWidth, cellHeight);
+			}
+		}
+	}
+
+	@Override
+	protected void onDraw(final Canvas canvas) {
+		if (mReleased) {
+			mReleased = false;
+			for (int r = 0; r < mRenderers.size(); r++) {
+				mRenderers.valueAt(r).setSize(mCellWidth, mCellHeight);
+			}
+		}
+		for (int i = 0; i < mCellCount; i++) {
+			final int left = getCellLeft(i);
+			final int top = getCellTop(i);
+			// Only the cells within the dirty area are drawn
+			if (canvas.quickReject(left, top, left + mCellWidth, top + mCellHeight, Canvas.EdgeType.AA)) {
+				continue;
+			}
+			final GaugeRenderer renderer = mCellRenderers[i];
+			final float value = mCellPhysics[i].getValue();
+			canvas.save(Canvas.MATRIX_SAVE_FLAG);
+			canvas.translate(left, top);
+			renderer.drawBackground(canvas);
+			if (mCellNeedleInitialized[i]) {
+				renderer.drawNeedle(canvas, value);
+			}
+			renderer.drawText(canvas, value);
+			canvas.restore();
+		}
+	}
+
+	@Override
+	protected Parcelable onSaveInstanceState() {
+		final Parcelable superState = super.onSaveInstanceState();
+
+		final float[] values = new float[mCellCount];
+		final float[] targetValues = new float[mCellCount];
+		final boolean[] needleInitialized = Arrays.copyOf(mCellNeedleInitialized, mCellCount);
+		for (int i = 0; i < mCellCount; i++) {
+			values[i] = mCellPhysics[i].getValue();
+			targetValues[i] = mCellPhysics[i].getTarget();
+		}
+
+		final Bundle state = new Bundle();
+		state.putParcelable("superState", superState);
+		state.putFloatArray("values", values);
+		state.putFloatArray("targetValues", targetValues);
+		state.putBooleanArray("needleInitialized", needleInitialized);
+		return state;
+	}
+
+	@Override
+	protected void onRestoreInstanceState(final Parcelable state) {
+		final Bundle bundle = (Bundle) state;
+		final Parcelable superState = bundle.getParcelable("superState");
+		super.onRestoreInstanceState(superState);
+
+		// The cells themselves are set up by the code owning the grid, only their values are kept
+		final float[] values = bundle.getFloatArray("values");
+		final float[] targetValues = bundle.getFloatArray("targetValues");
+		final boolean[] needleInitialized = bundle.getBooleanArray("needleInitialized");
+		if (null == values || null == targetValues || null == needleInitialized) {
+			// Saved by another version
+			return;
+		}
+		final int count = Math.min(mCellCount, Math.min(values.length,
+				Math.min(targetValues.length, needleInitialized.length)));
+		for (int i = 0; i < count; i++) {
+			mCellPhysics[i].snapTo(values[i]);
+			mCellNeedleInitialized[i] = needleInitialized[i];
+			if (needleInitialized[i]) {
+				setTargetValue(i, targetValues[i]);
+			}
+		}
+		invalidate();
+	}
+}
@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rendering counters of one {@link GaugeView}, collected while its metrics are enabled, see
+ * {@link GaugeView#setMetricsEnabled}. Times are in nanoseconds.
+ */
+public class GaugeMetrics {
+
+	public interface Listener {
+		/**
+		 * Called on the UI thread after every frame the gauge draws. The metrics are live and only
+		 * valid during the call, use {@link GaugeMetrics#GaugeMetrics(GaugeMetrics)} to keep them.
+		 */
+		void onFrameDrawn(GaugeView view, GaugeMetrics metrics);
+	}
+
+	private long mFramesDrawn;
+	private long mDrawNanos;
+	private long mMaxDrawNanos;
+	private long mBackgroundDrawNanos;
+	private long mNeedleDrawNanos;
+	private long mTextDrawNanos;
+
+	private long mBackgroundRebuilds;
+	private long mBackgroundRebuildNanos;
+
+	private long mSettles;
+	private long mSettleNanos;
+	private long mLastSettleNanos;
+
+	// Updates may be received on any thread
+	private final AtomicLong mUpdatesReceived = new AtomicLong();
+	private long mUpdatesRendered;
+
+	public GaugeMetrics() {
+	}
+
+	/**
+	 * Copies a snapshot of the metrics.
+	 */
+	public GaugeMetrics(final GaugeMetrics source) {
+		mFramesDrawn = source.mFramesDrawn;
+		mDrawNanos = source.mDrawNanos;
+		mMaxDrawNanos = source.mMaxDrawNanos;
+		mBackgroundDrawNanos = source.mBackgroundDrawNanos;
+		mNeedleDrawNanos = source.mNeedleDrawNanos;
+		mTextDrawNanos = source.mTextDrawNanos;
+		mBackgroundRebuilds = source.mBackgroundRebuilds;
+		mBackgroundRebuildNanos = source.mBackgroundRebuildNanos;
+		mSettles = source.mSettles;
+		mSettleNanos = source.mSettleNanos;
+		mLastSettleNanos = source.mLastSettleNanos;
+		mUpdatesReceived.set(source.mUpdatesReceived.get());
+		mUpdatesRendered = source.mUpdatesRendered;
+	}
+
+	void onFrameDrawn(final long backgroundNanos, final long needleNanos, final long textNanos) {
+		final long drawNanos = backgroundNanos + needleNanos + textNanos;
+		mFramesDrawn++;
+		mDrawNanos += drawNanos;
+		mMaxDrawNanos = Math.max(mMaxDrawNanos, drawNanos);
+		mBackgroundDrawNanos += backgroundNanos;
+		mNeedleDrawNanos += needleNanos;
+		mTextDrawNanos += textNanos;
+	}
+
+	void onBackgroundRebuilt(final long nanos) {
+		mBackgroundRebuilds++;
+		mBackgroundRebuildNanos += nanos;
+	}
+
+	void onNeedleSettled(final long nanos) {
+		mSettles++;
+		mSettleNanos += nanos;
+		mLastSettleNanos = nanos;
+	}
+
+	void onUpdateReceived() {
+		mUpdatesReceived.incrementAndGet();
+	}
+
+	void onUpdateRendered() {
+		mUpdatesRendered++;
+	}
+
+	public long getFramesDrawn() {
+		return mFramesDrawn;
+	}
+
+	/**
+	 * @return the total time spent in onDraw(), the sum of the background, needle and text times
+	 */
+	public long getDrawNanos() {
+		return mDrawNanos;
+	}
+
+	public long getMaxDrawNanos() {
+		return mMaxDrawNanos;
+	}
+
+	public long getAverageDrawNanos() {
+		return 0 != mFramesDrawn ? mDrawNanos / mFramesDrawn : 0;
+	}
+
+	public long getBackgroundDrawNanos() {
+		return mBackgroundDrawNanos;
+	}
+
+	public long getNeedleDrawNanos() {
+		return mNeedleDrawNanos;
+	}
+
+	public long getTextDrawNanos() {
+		return mTextDrawNanos;
+	}
+
+	/**
+	 * @return how many times the background was rendered; backgrounds taken from the
+	 *         {@link GaugeBackgroundCache} don't count
+	 */
+	public long getBackgroundRebuilds() {
+		return mBackgroundRebuilds;
+	}
+
+	public long getBackgroundRebuildNanos() {
+		return mBackgroundRebuildNanos;
+	}
+
+	/**
+	 * @return how many times the needle came to rest after being given a new target
+	 */
+	public long getSettles() {
+		return mSettles;
+	}
+
+	/**
+	 * @return the total time from a new target to the needle coming to rest
+	 */
+	public long getSettleNanos() {
+		return mSettleNanos;
+	}
+
+	public long getLastSettleNanos() {
+		return mLastSettleNanos;
+	}
+
+	/**
+	 * @return how many values were set, posted or offered as samples
+	 */
+	public long getUpdatesReceived() {
+		return mUpdatesReceived.get();
+	}
+
+	/**
+	 * @return how many distinct target values were drawn
+	 */
+	public long getUpdatesRendered() {
+		return mUpdatesRendered;
+	}
+
+	@Override
+	public String toString() {
+		return "GaugeMetrics[frames=" + mFramesDrawn + ", drawNanos=" + mDrawNanos + ", maxDrawNanos=" + mMaxDrawNanos
+				+ ", backgroundNanos=" + mBackgroundDrawNanos + ", needleNanos=" + mNeedleDrawNanos + ", textNanos="
+				+ mTextDrawNanos + ", rebuilds=" + mBackgroundRebuilds + ", rebuildNanos=" + mBackgroundRebuildNanos
+				+ ", settles=" + mSettles + ", settleNanos=" + mSettleNanos + ", updatesReceived="
+				+ mUpdatesReceived.get() + ", updatesRendered=" + mUpdatesRendered + "]";
+	}
+}
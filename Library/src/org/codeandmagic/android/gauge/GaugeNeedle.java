@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+
+/**
+ * Looks of an additional needle on a gauge, see {@link GaugeView#addNeedle}: by default a plain
+ * tapered needle of one color, without the shadow and shading of the main one, so a few of them
+ * cost little to draw. Sizes are fractions of the gauge, like the needle attributes.
+ */
+public class GaugeNeedle {
+
+	private final float mWidth;
+	private final float mHeight;
+
+	final Paint mPaint;
+	// Pointing North from the center of the unit square
+	final Path mPath;
+
+	// The pixel path, for the unit matrix it was transformed with, see GaugeRenderer.drawNeedle()
+	final Path mPixelPath = new Path();
+	final Matrix mPixelMatrix = new Matrix();
+	boolean mPixelPathValid;
+
+	/**
+	 * @param width the width of the base, e.g. {@link GaugeView#NEEDLE_WIDTH}
+	 * @param height the length from the center, e.g. {@link GaugeView#NEEDLE_HEIGHT}
+	 */
+	public GaugeNeedle(final int color, final float width, final float height) {
+		this(createPaint(color), createPath(width, height), width, height);
+	}
+
+	/**
+	 * A needle of any shape. The path is drawn with the paint once mapped to pixels, so stroke
+	 * widths and shader coordinates are in pixels. The paint is copied, as the gauge turns
+	 * anti-aliasing on and off with its quality; the path is kept and read once per size, so it
+	 * mustn't change afterwards.
+	 *
+	 * @param path in the unit square, pointing North from {@link GaugeView#CENTER}
+	 * @param width how far the path reaches to either side of its axis, including any stroke, so
+	 *            only the area the needle sweeps is redrawn
+	 * @param height how far the path reaches from the center
+	 */
+	public GaugeNeedle(final Paint paint, final Path path, final float width, final float height) {
+		mPaint = new Paint(paint);
+		mPath = path;
+		mWidth = width;
+		mHeight = height;
+	}
+
+	private static Paint createPaint(final int color) {
+		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		paint.setColor(color);
+		return paint;
+	}
+
+	private static Path createPath(final float width, final float height) {
+		final Path path = new Path();
+		path.moveTo(GaugeView.CENTER - width, GaugeView.CENTER);
+		path.lineTo(GaugeView.CENTER, GaugeView.CENTER - height);
+		path.lineTo(GaugeView.CENTER + width, GaugeView.CENTER);
+		path.close();
+		return path;
+	}
+
+	public int getColor() {
+		return mPaint.getColor();
+	}
+
+	/**
+	 * @return the needle's own copy of the paint
+	 */
+	public Paint getPaint() {
+		return mPaint;
+	}
+
+	public Path getPath() {
+		return mPath;
+	}
+
+	public float getWidth() {
+		return mWidth;
+	}
+
+	public float getHeight() {
+		return mHeight;
+	}
+}
@@ -0,0 +1,977 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Paint.Align;
+import android.graphics.Path;
+import android.graphics.Picture;
+import android.graphics.RadialGradient;
+import android.graphics.Rect;
+import android.graphics.Shader.TileMode;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.text.TextUtils;
+import android.util.AttributeSet;
+
+/**
+ * Draws a dial gauge of one {@link GaugeStyle} at one size: the background, which is shared through
+ * the {@link GaugeBackgroundCache}, and the needle and readout for any value. It holds no value or
+ * animation state, so one renderer can draw any number of gauges of the same style.
+ */
+public class GaugeRenderer {
+
+	/**
+	 * Told on the main thread when a background rendered on the worker thread can be drawn.
+	 */
+	public interface BackgroundListener {
+		void onBackgroundReady(GaugeRenderer renderer);
+	}
+
+	static final float RANGE_TEXT_SIZE = 0.05f;
+	// Age groups the history band fades through, the oldest being the faintest
+	static final int HISTORY_FADE_STEPS = 4;
+
+	private GaugeStyle mStyle;
+	private int mWidth;
+	private int mHeight;
+
+	private Bitmap mBackground;
+	// Copy of a hardware background for software canvases, see getBackground(Canvas)
+	private Bitmap mSoftwareBackground;
+	// Replayed instead of the bitmap with BACKGROUND_FORMAT_PICTURE
+	private Picture mBackgroundPicture;
+	private int mBackgroundFormat;
+	// The part of the background bitmap drawn, and where
+	private final Rect mBackgroundSrcRect = new Rect();
+	private final Rect mBackgroundRect = new Rect();
+	private int[] mStyleSignature;
+	private GaugeBackgroundCache.Key mBackgroundKey;
+	private long mLastBackgroundRenderNanos;
+	private Paint mBackgroundPaint;
+
+	// Keys of the backgrounds shown at the current size, so switching styles doesn't allocate
+	private final IdentityHashMap<int[], GaugeBackgroundCache.Key> mBackgroundKeys = new IdentityHashMap<int[], GaugeBackgroundCache.Key>();
+
+	// Only needed to render the background, created on the first cache miss of a style
+	private GaugeBackgroundPainter mBackgroundPainter;
+
+	// Set if uncached backgrounds are rendered on the worker thread, see setAsyncBackground()
+	private BackgroundListener mBackgroundListener;
+	private GaugeBackgroundCache.Key mPendingBackgroundKey;
+	private Paint mPlaceholderPaint;
+
+	private Paint mNeedleRightPaint;
+	private Paint mNeedleLeftPaint;
+	private Paint mNeedleScrewPaint;
+	private Paint mNeedleScrewBorderPaint;
+	private Paint mTextValuePaint;
+	private Paint mTextUnitPaint;
+
+	private ValueFormatter mValueFormatter;
+	private CharWidthCache mTextValueWidths;
+	private float mTextValueWidth;
+	private float mTextUnitWidth;
+
+	// The needle and the text are drawn in pixel space, see setUnitMatrix()
+	private final Matrix mUnitMatrix = new Matrix();
+	private float mUnitScale;
+	private float mUnitOffsetX;
+	private float mUnitOffsetY;
+	private final Path mNeedleRightPixelPath = new Path();
+	private final Path mNeedleLeftPixelPath = new Path();
+	private Paint mNeedleShadowPaint;
+
+	// Only the area swept by the needle and the readout are repainted while it moves
+	private static final float SWEEP_MARGIN = 0.02f;
+
+	// The history band runs between the edge of the face and the scale
+	private static final float HISTORY_BAND_LENGTH = 0.015f;
+	private static final int HISTORY_ALPHA = 200;
+	private Paint mHistoryPaint;
+	private float[] mHistoryLines = new float[0];
+	private final float[] mSweepBounds = new float[4];
+	private final Rect mTextRect = new Rect();
+
+	private int mNeedleRenderer;
+	private int mNeedleSpriteAngles;
+	private NeedleSprite mNeedleSprite;
+
+	// One of the QualityGovernor levels
+	private int mQuality = QualityGovernor.QUALITY_FULL;
+
+	/**
+	 * Only allocates what is drawn on every frame, the style carries the rest.
+	 */
+	public GaugeRenderer(final GaugeStyle style) {
+		mStyle = style;
+		mBackgroundFormat = style.mBackgroundFormat;
+		mStyleSignature = style.mSignature;
+		initDrawingTools();
+		setNeedleRenderer(style.mNeedleRenderer, style.mNeedleSpriteAngles);
+	}
+
+	public GaugeRenderer(final Context context, final AttributeSet attrs, final int defStyleAttr, final int defStyleRes) {
+		this(GaugeStyle.obtain(context, attrs, defStyleAttr, defStyleRes));
+	}
+
+	/**
+	 * @param styleRes a style with the gauge attributes, or 0 for the defaults
+	 */
+	public GaugeRenderer(final Context context, final int styleRes) {
+		this(GaugeStyle.fromResource(context, styleRes));
+	}
+
+	/**
+	 * Creates a renderer of the same style and settings with its own paints and sprites. Renderers
+	 * aren't thread safe, this is how to draw one style on several threads at once.
+	 */
+	public GaugeRenderer(final GaugeRenderer source) {
+		this(source.mStyle);
+		mBackgroundFormat = source.mBackgroundFormat;
+		mStyleSignature = source.mStyleSignature;
+		if (mNeedleRenderer != source.mNeedleRenderer || mNeedleSpriteAngles != source.mNeedleSpriteAngles) {
+			setNeedleRenderer(source.mNeedleRenderer, source.mNeedleSpriteAngles);
+		}
+		if (null != source.mValueFormatter) {
+			mValueFormatter = new ValueFormatter(source.mValueFormatter.getDecimals(), source.mValueFormatter.isShowSign(),
+					source.mValueFormatter.getDecimalSeparator());
+		}
+		if (0 != source.mWidth && 0 != source.mHeight) {
+			setSize(source.mWidth, source.mHeight);
+		}
+	}
+
+	public GaugeStyle getStyle() {
+		return mStyle;
+	}
+
+	/**
+	 * Switches to another style, rebuilding only what differs from the current one: the paints are
+	 * updated in place, and the needle sprites and the background are only rendered again if they
+	 * look different. Switching back to a style already shown at this size allocates nothing.
+	 * Format and needle renderer settings made on this renderer are kept.
+	 *
+	 * @return true if the background changed
+	 */
+	public boolean setStyle(final GaugeStyle style) {
+		final GaugeStyle previous = mStyle;
+		if (style == previous) {
+			return false;
+		}
+		mStyle = style;
+		initDrawingTools();
+		applyQuality();
+		if (style.mShowText) {
+			mTextValuePaint.setColor(style.mTextValueColor);
+			mTextUnitPaint.setColor(style.mTextUnitColor);
+			// Against the formatter in use, which may come from an older style or setValueFormat()
+			if (mValueFormatter.getDecimals() != style.mTextValueDecimals
+					|| mValueFormatter.isShowSign() != style.mTextValueShowSign) {
+				mValueFormatter = new ValueFormatter(style.mTextValueDecimals, style.mTextValueShowSign,
+						mValueFormatter.getDecimalSeparator());
+			}
+		}
+
+		if (mBackgroundFormat == previous.mBackgroundFormat) {
+			mBackgroundFormat = style.mBackgroundFormat;
+		}
+		final int[] signature = style.getSignature(mBackgroundFormat);
+		final boolean backgroundChanged = !Arrays.equals(mStyleSignature, signature);
+		mStyleSignature = signature;
+		if (0 != mWidth && 0 != mHeight) {
+			// The sprites are rendered below, from the new pixel paths
+			setUnitMatrix(mWidth, mHeight, false);
+			if (backgroundChanged) {
+				drawGauge();
+			}
+		}
+
+		int needleRenderer = mNeedleRenderer;
+		int spriteAngles = mNeedleSpriteAngles;
+		if (needleRenderer == previous.mNeedleRenderer && spriteAngles == previous.mNeedleSpriteAngles) {
+			needleRenderer = style.mNeedleRenderer;
+			spriteAngles = style.mNeedleSpriteAngles;
+		}
+		if (needleRenderer != mNeedleRenderer || spriteAngles != mNeedleSpriteAngles
+				|| previous.mShowNeedle != style.mShowNeedle) {
+			setNeedleRenderer(needleRenderer, spriteAngles);
+		} else if (previous.mNeedleWidth != style.mNeedleWidth || previous.mNeedleHeight != style.mNeedleHeight) {
+			renderNeedleSprite();
+		}
+		return backgroundChanged;
+	}
+
+	/**
+	 * Creates the paints drawn on every frame that the style needs and that don't exist yet.
+	 */
+	private void initDrawingTools() {
+		if (null == mBackgroundPaint) {
+			mBackgroundPaint = new Paint();
+			mBackgroundPaint.setFilterBitmap(true);
+		}
+
+		if (mStyle.mShowNeedle && null == mNeedleLeftPaint) {
+			mNeedleLeftPaint = getDefaultNeedleLeftPaint();
+			mNeedleRightPaint = getDefaultNeedleRightPaint();
+			mNeedleScrewPaint = getDefaultNeedleScrewPaint();
+			mNeedleScrewBorderPaint = getDefaultNeedleScrewBorderPaint();
+			mNeedleShadowPaint = getDefaultNeedleShadowPaint();
+		}
+		if (mStyle.mShowText && null == mTextValuePaint) {
+			mTextValuePaint = getDefaultTextValuePaint();
+			mTextUnitPaint = getDefaultTextUnitPaint();
+			mTextValueWidths = new CharWidthCache(mTextValuePaint);
+			mValueFormatter = new ValueFormatter(mStyle.mTextValueDecimals, mStyle.mTextValueShowSign, Locale.getDefault());
+		}
+	}
+
+	public Paint getDefaultNeedleLeftPaint() {
+		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		paint.setColor(Color.rgb(176, 10, 19));
+		return paint;
+	}
+
+	public Paint getDefaultNeedleRightPaint() {
+		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		paint.setColor(Color.rgb(252, 18, 30));
+		paint.setShadowLayer(0.01f, 0.005f, -0.005f, Color.argb(127, 0, 0, 0));
+		return paint;
+	}
+
+	public Paint getDefaultNeedleShadowPaint() {
+		// Used instead of shadow layers where the hardware renderer doesn't support them
+		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		paint.setColor(Color.argb(64, 0, 0, 0));
+		return paint;
+	}
+
+	public Paint getDefaultNeedleScrewPaint() {
+		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		paint.setShader(new RadialGradient(0.5f, 0.5f, 0.07f, new int[]{Color.rgb(171, 171, 171), Color.WHITE}, new float[]{0.05f,
+				0.9f}, TileMode.MIRROR));
+		return paint;
+	}
+
+	public Paint getDefaultNeedleScrewBorderPaint() {
+		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		paint.setStyle(Paint.Style.STROKE);
+		paint.setColor(Color.argb(100, 81, 84, 89));
+		paint.setStrokeWidth(0.005f);
+		return paint;
+	}
+
+	public Paint getDefaultTextValuePaint() {
+		final Paint paint = new Paint(Paint.LINEAR_TEXT_FLAG | Paint.ANTI_ALIAS_FLAG);
+		paint.setColor(mStyle.mTextValueColor);
+		paint.setStyle(Paint.Style.FILL_AND_STROKE);
+		paint.setStrokeWidth(0.005f);
+		paint.setTextSize(mStyle.mTextValueSize);
+		paint.setTextAlign(Align.CENTER);
+		paint.setTypeface(Typeface.SANS_SERIF);
+		paint.setShadowLayer(0.01f, 0.002f, 0.002f, mStyle.mTextShadowColor);
+		return paint;
+	}
+
+	public Paint getDefaultTextUnitPaint() {
+		final Paint paint = new Paint(Paint.LINEAR_TEXT_FLAG | Paint.ANTI_ALIAS_FLAG);
+		paint.setColor(mStyle.mTextUnitColor);
+		paint.setStyle(Paint.Style.FILL_AND_STROKE);
+		paint.setStrokeWidth(0.005f);
+		paint.setTextSize(mStyle.mTextUnitSize);
+		paint.setTextAlign(Align.CENTER);
+		paint.setShadowLayer(0.01f, 0.002f, 0.002f, mStyle.mTextShadowColor);
+		return paint;
+	}
+
+	/**
+	 * Lays the gauge out in a width x height area, centered, and gets the background for that size.
+	 */
+	public void setSize(final int width, final int height) {
+		if (width != mWidth || height != mHeight) {
+			mBackgroundKeys.clear();
+		}
+		mWidth = width;
+		mHeight = height;
+		setUnitMatrix(width, height, true);
+		drawGauge();
+	}
+
+	public int getWidth() {
+		return mWidth;
+	}
+
+	public int getHeight() {
+		return mHeight;
+	}
+
+	/**
+	 * Gives the background and the needle sprites back to the shared cache and pool, and lets go
+	 * of the shared rim texture. The next {@link #setSize} gets them again.
+	 */
+	public void release() {
+		cancelPendingBackground();
+		releaseBackground();
+		mBackgroundPicture = null;
+		mBackgroundPainter = null;
+		if (null != mNeedleSprite) {
+			mNeedleSprite.release();
+		}
+	}
+
+	/**
+	 * Maps the unit square the gauge is designed in to the centered square of the area. The
+	 * per-frame parts (needle, text) are converted to pixels here once, instead of drawing them on
+	 * a scaled canvas: the hardware renderer rasterizes paths and glyphs at their local size, which
+	 * made the tiny unit-space needle vanish.
+	 *
+	 * @param renderSprite whether the needle sprites have to be rendered again
+	 */
+	private void setUnitMatrix(final int width, final int height, final boolean renderSprite) {
+		mUnitScale = Math.min(width, height);
+		mUnitOffsetX = (width - mUnitScale) / 2;
+		mUnitOffsetY = (height - mUnitScale) / 2;
+		mUnitMatrix.setScale(mUnitScale, mUnitScale);
+		mUnitMatrix.postTranslate(mUnitOffsetX, mUnitOffsetY);
+
+		if (mStyle.mShowNeedle) {
+			mStyle.mNeedleLeftPath.transform(mUnitMatrix, mNeedleLeftPixelPath);
+			mStyle.mNeedleRightPath.transform(mUnitMatrix, mNeedleRightPixelPath);
+			mNeedleScrewPaint.getShader().setLocalMatrix(mUnitMatrix);
+			mNeedleScrewBorderPaint.setStrokeWidth(0.005f * mUnitScale);
+			if (renderSprite) {
+				renderNeedleSprite();
+			}
+		}
+		if (mStyle.mShowText) {
+			setPixelTextSize(mTextValuePaint, mStyle.mTextValueSize);
+			setPixelTextSize(mTextUnitPaint, mStyle.mTextUnitSize);
+			mTextValueWidth = !TextUtils.isEmpty(mStyle.mTextValue) ? mTextValuePaint.measureText(mStyle.mTextValue) : 0;
+			mTextUnitWidth = !TextUtils.isEmpty(mStyle.mTextUnit) ? mTextUnitPaint.measureText(mStyle.mTextUnit) : 0;
+
+			// Across the face, from above the tallest glyph to below the shadow of the descenders
+			final float baseline = toPixelY(GaugeView.CENTER + 0.1f);
+			final float textSize = mStyle.mTextValueSize * mUnitScale;
+			mTextRect.set((int) toPixelX(mStyle.mFaceRect.left), (int) (baseline - 1.2f * textSize),
+					(int) Math.ceil(toPixelX(mStyle.mFaceRect.right)), (int) Math.ceil(baseline + 0.4f * textSize));
+		}
+	}
+
+	private void setPixelTextSize(final Paint paint, final float textSize) {
+		paint.setTextSize(textSize * mUnitScale);
+		paint.setStrokeWidth(0.005f * mUnitScale);
+		setTextShadow(paint);
+	}
+
+	private void setTextShadow(final Paint paint) {
+		if (mQuality < QualityGovernor.QUALITY_NO_TEXT_SHADOW) {
+			paint.setShadowLayer(0.01f * mUnitScale, 0.002f * mUnitScale, 0.002f * mUnitScale, mStyle.mTextShadowColor);
+		} else {
+			paint.setShadowLayer(0, 0, 0, Color.BLACK);
+		}
+	}
+
+	/**
+	 * Trades the looks of the needle and the readout for drawing speed, e.g. while many gauges
+	 * animate at once. The background isn't affected.
+	 *
+	 * @param quality one of the {@link QualityGovernor} levels: from
+	 *            {@link QualityGovernor#QUALITY_NO_NEEDLE_SHADOW} the path needle has no shadow,
+	 *            from {@link QualityGovernor#QUALITY_NO_TEXT_SHADOW} the readout neither, and at
+	 *            {@link QualityGovernor#QUALITY_NO_ANTI_ALIAS} both are drawn aliased
+	 */
+	public void setQuality(final int quality) {
+		if (mQuality != quality) {
+			mQuality = quality;
+			applyQuality();
+		}
+	}
+
+	public int getQuality() {
+		return mQuality;
+	}
+
+	private void applyQuality() {
+		final boolean antiAlias = mQuality < QualityGovernor.QUALITY_NO_ANTI_ALIAS;
+		if (mStyle.mShowNeedle) {
+			mNeedleLeftPaint.setAntiAlias(antiAlias);
+			mNeedleRightPaint.setAntiAlias(antiAlias);
+			mNeedleShadowPaint.setAntiAlias(antiAlias);
+			mNeedleScrewPaint.setAntiAlias(antiAlias);
+			mNeedleScrewBorderPaint.setAntiAlias(antiAlias);
+		}
+		if (mStyle.mShowText) {
+			mTextValuePaint.setAntiAlias(antiAlias);
+			mTextUnitPaint.setAntiAlias(antiAlias);
+			setTextShadow(mTextValuePaint);
+			setTextShadow(mTextUnitPaint);
+		}
+	}
+
+	private float toPixelX(final float x) {
+		return mUnitOffsetX + x * mUnitScale;
+	}
+
+	private float toPixelY(final float y) {
+		return mUnitOffsetY + y * mUnitScale;
+	}
+
+	private void drawGauge() {
+		cancelPendingBackground();
+		mBackgroundPicture = null;
+		if (0 == mWidth || 0 == mHeight) {
+			releaseBackground();
+			return;
+		}
+		mLastBackgroundRenderNanos = 0;
+		if (GaugeView.BACKGROUND_FORMAT_PICTURE == mBackgroundFormat && Build.VERSION.SDK_INT >= 28) {
+			// Recorded once per style and scaled when drawn, nothing to render for this size
+			releaseBackground();
+			mBackgroundPicture = mStyle.getBackgroundPicture();
+			return;
+		}
+
+		// Identical gauges share the background, so only render it if nobody else did
+		GaugeBackgroundCache.Key key = mBackgroundKeys.get(mStyleSignature);
+		if (null == key) {
+			key = new GaugeBackgroundCache.Key(mStyleSignature, mWidth, mHeight);
+			mBackgroundKeys.put(mStyleSignature, key);
+		}
+		// Acquired before letting go of the old one, which may be the same
+		final Bitmap background = GaugeBackgroundCache.getInstance().acquire(key);
+		if (null != background) {
+			setBackground(key, background);
+		} else if (null != mBackgroundListener) {
+			// Until it is ready the old background is stretched over the gauge, if there is one
+			if (null != mBackground) {
+				setGaugeRect(mBackgroundSrcRect, mBackgroundKey.getWidth(), mBackgroundKey.getHeight());
+				setGaugeRect(mBackgroundRect, mWidth, mHeight);
+			}
+			mPendingBackgroundKey = key;
+			GaugeBackgroundLoader.load(key, mStyle, mBackgroundFormat, mBackgroundLoaded);
+		} else {
+			renderBackground(key);
+		}
+	}
+
+	private void renderBackground(final GaugeBackgroundCache.Key key) {
+		final long start = System.nanoTime();
+		if (null == mBackgroundPainter || !mBackgroundPainter.canPaint(mStyle, mUnitScale)) {
+			mBackgroundPainter = new GaugeBackgroundPainter(mStyle, mUnitScale);
+		}
+		final Bitmap background = mBackgroundPainter.render(mWidth, mHeight, mBackgroundFormat);
+		final Bitmap cached = GaugeBackgroundCache.getInstance().put(key, background);
+		if (background != cached) {
+			GaugeBitmapPool.getInstance().put(background);
+		}
+		setBackground(key, cached);
+		mLastBackgroundRenderNanos = System.nanoTime() - start;
+	}
+
+	/**
+	 * Switches to an acquired background, letting go of the previous one.
+	 */
+	private void setBackground(final GaugeBackgroundCache.Key key, final Bitmap background) {
+		releaseBackground();
+		mBackgroundKey = key;
+		mBackground = background;
+		mBackgroundSrcRect.set(0, 0, key.getWidth(), key.getHeight());
+		mBackgroundRect.set(mBackgroundSrcRect);
+	}
+
+	/**
+	 * Sets the rect to the centered square the gauge takes up in a width x height area.
+	 */
+	private static void setGaugeRect(final Rect rect, final int width, final int height) {
+		final int size = Math.min(width, height);
+		rect.left = (width - size) / 2;
+		rect.top = (height - size) / 2;
+		rect.right = rect.left + size;
+		rect.bottom = rect.top + size;
+	}
+
+	private final GaugeBackgroundLoader.Callback mBackgroundLoaded = new GaugeBackgroundLoader.Callback() {
+		@Override
+		public void onBackgroundLoaded(final GaugeBackgroundCache.Key key, final long renderNanos) {
+			mPendingBackgroundKey = null;
+			final Bitmap background = GaugeBackgroundCache.getInstance().acquire(key);
+			if (null != background) {
+				setBackground(key, background);
+				mLastBackgroundRenderNanos = renderNanos;
+			} else {
+				// It failed on the worker thread, so it fails here for everyone to see
+				renderBackground(key);
+			}
+			mBackgroundListener.onBackgroundReady(GaugeRenderer.this);
+		}
+	};
+
+	private void cancelPendingBackground() {
+		if (null != mPendingBackgroundKey) {
+			GaugeBackgroundLoader.cancel(mPendingBackgroundKey, mBackgroundLoaded);
+			mPendingBackgroundKey = null;
+		}
+	}
+
+	/**
+	 * Renders backgrounds that aren't cached yet on a worker thread, so laying out a screen of new
+	 * gauges doesn't hold up the main thread. Until the background is ready the previous one is
+	 * drawn stretched to the new size, or a plain face if there was none. Gauges waiting for the
+	 * same background share one rendering. A renderer doing this must only be used on the main
+	 * thread.
+	 *
+	 * @param listener told when the background is ready, typically to invalidate the view, or null
+	 *            to render on the calling thread, which is the default
+	 */
+	public void setAsyncBackground(final BackgroundListener listener) {
+		mBackgroundListener = listener;
+		if (null == listener && null != mPendingBackgroundKey) {
+			drawGauge();
+		}
+	}
+
+	/**
+	 * @return whether the background is still being rendered on the worker thread
+	 */
+	public boolean isBackgroundPending() {
+		return null != mPendingBackgroundKey;
+	}
+
+	/**
+	 * @return how long the background took to render the last time it was set up, or 0 if it came
+	 *         from the cache
+	 */
+	public long getLastBackgroundRenderNanos() {
+		return mLastBackgroundRenderNanos;
+	}
+
+	/**
+	 * Selects how the background is kept: one of {@link GaugeView#BACKGROUND_FORMAT_ARGB_8888},
+	 * {@link GaugeView#BACKGROUND_FORMAT_RGB_565} (half the memory, no alpha: black around the dial),
+	 * {@link GaugeView#BACKGROUND_FORMAT_HARDWARE} (API 26+, software canvases draw a copy) or
+	 * {@link GaugeView#BACKGROUND_FORMAT_PICTURE} (API 28+, drawing commands instead of pixels).
+	 */
+	public void setBackgroundFormat(final int backgroundFormat) {
+		if (mBackgroundFormat != backgroundFormat) {
+			mBackgroundFormat = backgroundFormat;
+			mStyleSignature = mStyle.getSignature(backgroundFormat);
+			drawGauge();
+		}
+	}
+
+	public int getBackgroundFormat() {
+		return mBackgroundFormat;
+	}
+
+	private void releaseBackground() {
+		if (null != mBackgroundKey) {
+			GaugeBackgroundCache.getInstance().release(mBackgroundKey);
+			mBackgroundKey = null;
+			mBackground = null;
+			mSoftwareBackground = null;
+		}
+	}
+
+	/**
+	 * Draws the whole gauge showing the given value.
+	 */
+	public void draw(final Canvas canvas, final float value) {
+		drawBackground(canvas);
+		drawNeedle(canvas, value);
+		drawText(canvas, value);
+	}
+
+	/**
+	 * Draws the whole gauge showing the given value into the top left corner of the bitmap, sized
+	 * to fit it.
+	 */
+	public void draw(final Bitmap bitmap, final float value) {
+		if (bitmap.getWidth() != mWidth || bitmap.getHeight() != mHeight) {
+			setSize(bitmap.getWidth(), bitmap.getHeight());
+		}
+		bitmap.eraseColor(Color.TRANSPARENT);
+		draw(new Canvas(bitmap), value);
+	}
+
+	public void drawBackground(final Canvas canvas) {
+		if (null != mBackgroundPicture) {
+			canvas.save(Canvas.MATRIX_SAVE_FLAG);
+			canvas.translate(mUnitOffsetX, mUnitOffsetY);
+			canvas.scale(mUnitScale / GaugeBackgroundPainter.PICTURE_SCALE, mUnitScale / GaugeBackgroundPainter.PICTURE_SCALE);
+			canvas.drawPicture(mBackgroundPicture);
+			canvas.restore();
+		} else if (null != mBackground) {
+			final Bitmap background = getBackground(canvas);
+			if (null != background) {
+				canvas.drawBitmap(background, mBackgroundSrcRect, mBackgroundRect, mBackgroundPaint);
+			}
+		} else if (null != mPendingBackgroundKey) {
+			if (null == mPlaceholderPaint) {
+				mPlaceholderPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+				mPlaceholderPaint.setColor(Color.rgb(36, 89, 162));
+			}
+			canvas.drawCircle(toPixelX(mStyle.mFaceRect.centerX()), toPixelY(mStyle.mFaceRect.centerY()),
+					mStyle.mFaceRect.width() / 2 * mUnitScale, mPlaceholderPaint);
+		}
+	}
+
+	/**
+	 * @return the background bitmap in a form the canvas can draw, null if there is none
+	 */
+	@TargetApi(26)
+	private Bitmap getBackground(final Canvas canvas) {
+		if (Build.VERSION.SDK_INT < 26 || canvas.isHardwareAccelerated()
+				|| mBackground.getConfig() != Bitmap.Config.valueOf("HARDWARE")) {
+			return mBackground;
+		}
+		// Software canvases, e.g. bitmaps, screenshots and windows without hardware acceleration,
+		// throw on hardware bitmaps, so they get a software copy made the first time it is needed
+		if (null == mSoftwareBackground) {
+			mSoftwareBackground = mBackground.copy(Bitmap.Config.ARGB_8888, false);
+		}
+		return mSoftwareBackground;
+	}
+
+	public void drawText(final Canvas canvas, final float value) {
+		if (!mStyle.mShowText) {
+			return;
+		}
+		// Nothing in here allocates: the fixed texts are measured once per size and the value is
+		// formatted into a reused buffer, see setUnitMatrix()
+		final float startX = toPixelX(GaugeView.CENTER) - mTextUnitWidth / 2;
+		final float startY = toPixelY(GaugeView.CENTER + 0.1f);
+
+		final float textValueWidth;
+		if (!TextUtils.isEmpty(mStyle.mTextValue)) {
+			textValueWidth = mTextValueWidth;
+			canvas.drawText(mStyle.mTextValue, startX, startY, mTextValuePaint);
+		} else {
+			final char[] chars = mValueFormatter.getChars();
+			final int length = mValueFormatter.format(value);
+			textValueWidth = mTextValueWidths.measure(chars, length);
+			canvas.drawText(chars, 0, length, startX, startY, mTextValuePaint);
+		}
+
+		if (!TextUtils.isEmpty(mStyle.mTextUnit)) {
+			canvas.drawText(mStyle.mTextUnit, toPixelX(GaugeView.CENTER) + textValueWidth / 2 + 0.03f * mUnitScale,
+					toPixelY(GaugeView.CENTER), mTextUnitPaint);
+		}
+	}
+
+	/**
+	 * Changes how the value readout is formatted.
+	 *
+	 * @param decimals number of decimals, from 0 (truncated to an integer) to {@link ValueFormatter#MAX_DECIMALS}
+	 * @param showSign whether positive values get a '+' sign
+	 * @param locale provides the decimal separator
+	 */
+	public void setValueFormat(final int decimals, final boolean showSign, final Locale locale) {
+		mValueFormatter = new ValueFormatter(decimals, showSign, locale);
+	}
+
+	/**
+	 * @return the ranges of the scale, or null if it doesn't show any
+	 */
+	public RangeIndex getRangeIndex() {
+		return mStyle.mRangeIndex;
+	}
+
+	public void drawNeedle(final Canvas canvas, final float value) {
+		if (!mStyle.mShowNeedle) {
+			return;
+		}
+		final float angle = getAngleForValue(value);
+		// Logger.log.info(String.format("value=%f -> angle=%f", value, angle));
+
+		final float centerX = toPixelX(GaugeView.CENTER);
+		final float centerY = toPixelY(GaugeView.CENTER);
+
+		if (null != mNeedleSprite && mNeedleSprite.isReady()) {
+			mNeedleSprite.draw(canvas, angle, centerX, centerY);
+		} else {
+			drawNeedle(canvas, angle, centerX, centerY, NeedleSprite.isShadowOnLeft(angle), supportsShadowLayer(canvas),
+					mQuality < QualityGovernor.QUALITY_NO_NEEDLE_SHADOW);
+		}
+
+		// Draw the needle screw and its border
+		canvas.drawCircle(centerX, centerY, 0.04f * mUnitScale, mNeedleScrewPaint);
+		canvas.drawCircle(centerX, centerY, 0.04f * mUnitScale, mNeedleScrewBorderPaint);
+	}
+
+	private void drawNeedle(final Canvas canvas, final float angle, final float centerX, final float centerY,
+			final boolean shadowOnLeft, final boolean shadowLayer, final boolean shadow) {
+		canvas.save(Canvas.MATRIX_SAVE_FLAG);
+		// The pixel paths are positioned around the center of the view
+		canvas.translate(centerX - toPixelX(GaugeView.CENTER), centerY - toPixelY(GaugeView.CENTER));
+		canvas.rotate(angle, toPixelX(GaugeView.CENTER), toPixelY(GaugeView.CENTER));
+
+		setNeedleShadowPosition(shadowOnLeft, shadow && shadowLayer);
+		if (shadow && !shadowLayer) {
+			drawNeedleShadow(canvas, shadowOnLeft);
+		}
+		canvas.drawPath(mNeedleLeftPixelPath, mNeedleLeftPaint);
+		canvas.drawPath(mNeedleRightPixelPath, mNeedleRightPaint);
+
+		canvas.restore();
+	}
+
+	/**
+	 * Draws the values in the history around the scale: as {@link GaugeView#HISTORY_BAND}, a tick
+	 * per value just outside the scale, fading with age, or as {@link GaugeView#HISTORY_GHOSTS},
+	 * faint needles at the smallest and largest value. All the lines are laid out in one reused
+	 * array and drawn with a few drawLines() calls, however many values there are.
+	 *
+	 * @param windowNanos how far back the history goes from nowNanos, for the fading
+	 */
+	public void drawHistory(final Canvas canvas, final ValueHistory history, final int mode, final long nowNanos,
+			final long windowNanos) {
+		final int size = history.size();
+		if (0 == size || 0 == mUnitScale) {
+			return;
+		}
+		if (null == mHistoryPaint) {
+			mHistoryPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+			mHistoryPaint.setStyle(Paint.Style.STROKE);
+			mHistoryPaint.setStrokeCap(Paint.Cap.ROUND);
+			mHistoryPaint.setColor(Color.WHITE);
+		}
+		final ScaleLayout layout = mStyle.mScaleLayout;
+
+		if (GaugeView.HISTORY_GHOSTS == mode) {
+			if (mHistoryLines.length < 8) {
+				mHistoryLines = new float[8];
+			}
+			final float hub = Math.max(mStyle.mNeedleWidth, 0.04f);
+			final float top = GaugeView.CENTER - mStyle.mNeedleHeight;
+			layout.getValueLine(history.getMin(), top, mStyle.mNeedleHeight - hub, mHistoryLines, 0);
+			layout.getValueLine(history.getMax(), top, mStyle.mNeedleHeight - hub, mHistoryLines, 4);
+			mUnitMatrix.mapPoints(mHistoryLines, 0, mHistoryLines, 0, 4);
+			mHistoryPaint.setStrokeWidth(0.5f * mStyle.mNeedleWidth * mUnitScale);
+			mHistoryPaint.setAlpha(HISTORY_ALPHA / 2);
+			canvas.drawLines(mHistoryLines, 0, 8, mHistoryPaint);
+			return;
+		}
+
+		if (mHistoryLines.length < 4 * size) {
+			mHistoryLines = new float[4 * history.getCapacity()];
+		}
+		final float top = mStyle.mScaleRect.top - (mStyle.mScalePosition + HISTORY_BAND_LENGTH) / 2;
+		for (int i = 0; i < size; i++) {
+			layout.getValueLine(history.getValue(i), top, HISTORY_BAND_LENGTH, mHistoryLines, 4 * i);
+		}
+		mUnitMatrix.mapPoints(mHistoryLines, 0, mHistoryLines, 0, 2 * size);
+		mHistoryPaint.setStrokeWidth(0.005f * mUnitScale);
+
+		// The values are in time order, so each age group is a run of lines
+		final long stepNanos = windowNanos / HISTORY_FADE_STEPS;
+		int from = 0;
+		for (int step = 1; step <= HISTORY_FADE_STEPS && from < size; step++) {
+			int to = size;
+			if (step < HISTORY_FADE_STEPS) {
+				final long end = nowNanos - windowNanos + step * stepNanos;
+				to = from;
+				while (to < size && history.getTime(to) < end) {
+					to++;
+				}
+			}
+			if (to > from) {
+				mHistoryPaint.setAlpha(HISTORY_ALPHA * step / HISTORY_FADE_STEPS);
+				canvas.drawLines(mHistoryLines, 4 * from, 4 * (to - from), mHistoryPaint);
+				from = to;
+			}
+		}
+	}
+
+	/**
+	 * Draws an additional needle pointing at the value. Draw these before the main needle, so its
+	 * screw covers their hubs.
+	 */
+	public void drawNeedle(final Canvas canvas, final GaugeNeedle needle, final float value) {
+		if (!needle.mPixelPathValid || !needle.mPixelMatrix.equals(mUnitMatrix)) {
+			needle.mPath.transform(mUnitMatrix, needle.mPixelPath);
+			needle.mPixelMatrix.set(mUnitMatrix);
+			needle.mPixelPathValid = true;
+		}
+		needle.mPaint.setAntiAlias(mQuality < QualityGovernor.QUALITY_NO_ANTI_ALIAS);
+
+		canvas.save(Canvas.MATRIX_SAVE_FLAG);
+		canvas.rotate(getAngleForValue(value), toPixelX(GaugeView.CENTER), toPixelY(GaugeView.CENTER));
+		canvas.drawPath(needle.mPixelPath, needle.mPaint);
+		canvas.restore();
+	}
+
+	private final NeedleSprite.Renderer mNeedleSpriteRenderer = new NeedleSprite.Renderer() {
+		@Override
+		public void drawNeedle(final Canvas canvas, final float angle, final float centerX, final float centerY,
+				final boolean shadowOnLeft) {
+			// Sprites are always rendered in software, so they get the real blurred shadow, and they
+			// are kept for good, so they are rendered at full quality
+			final boolean antiAlias = mNeedleLeftPaint.isAntiAlias();
+			mNeedleLeftPaint.setAntiAlias(true);
+			mNeedleRightPaint.setAntiAlias(true);
+			GaugeRenderer.this.drawNeedle(canvas, angle, centerX, centerY, shadowOnLeft, true, true);
+			mNeedleLeftPaint.setAntiAlias(antiAlias);
+			mNeedleRightPaint.setAntiAlias(antiAlias);
+		}
+	};
+
+	/**
+	 * Selects how the needle is drawn: {@link GaugeView#NEEDLE_RENDERER_PATH} rasterizes its paths and
+	 * shadow on every frame, {@link GaugeView#NEEDLE_RENDERER_SPRITE} rasterizes them once per size and
+	 * then only blits bitmaps. With {@code spriteAngles} > 0 the sprite is pre-rendered at that
+	 * many angles and drawn without rotation, at the cost of one bitmap per angle.
+	 */
+	public void setNeedleRenderer(final int needleRenderer, final int spriteAngles) {
+		if (null != mNeedleSprite) {
+			mNeedleSprite.release();
+			mNeedleSprite = null;
+		}
+		mNeedleRenderer = needleRenderer;
+		mNeedleSpriteAngles = spriteAngles;
+		if (mStyle.mShowNeedle && GaugeView.NEEDLE_RENDERER_SPRITE == needleRenderer) {
+			mNeedleSprite = new NeedleSprite(spriteAngles);
+			renderNeedleSprite();
+		}
+	}
+
+	public int getNeedleRenderer() {
+		return mNeedleRenderer;
+	}
+
+	private void renderNeedleSprite() {
+		if (null != mNeedleSprite) {
+			// Enough room for the needle at any angle plus its shadow
+			mNeedleSprite.render((mStyle.mNeedleHeight + mStyle.mNeedleWidth + 0.02f) * mUnitScale, mNeedleSpriteRenderer);
+		}
+	}
+
+	@TargetApi(11)
+	private static boolean supportsShadowLayer(final Canvas canvas) {
+		// Shadow layers on shapes are only rendered by the hardware pipeline from API 28 (P)
+		return Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB || !canvas.isHardwareAccelerated()
+				|| Build.VERSION.SDK_INT >= 28;
+	}
+
+	private void setNeedleShadowPosition(final boolean shadowOnLeft, final boolean shadowLayer) {
+		final float radius = 0.01f * mUnitScale;
+		final float offset = 0.005f * mUnitScale;
+		if (!shadowLayer) {
+			mNeedleLeftPaint.setShadowLayer(0, 0, 0, Color.BLACK);
+			mNeedleRightPaint.setShadowLayer(0, 0, 0, Color.BLACK);
+		} else if (shadowOnLeft) {
+			// Move shadow from right to left
+			mNeedleRightPaint.setShadowLayer(0, 0, 0, Color.BLACK);
+			mNeedleLeftPaint.setShadowLayer(radius, -offset, offset, Color.argb(127, 0, 0, 0));
+        } else {
+			// Move shadow from left to right
+			mNeedleLeftPaint.setShadowLayer(0, 0, 0, Color.BLACK);
+			mNeedleRightPaint.setShadowLayer(radius, offset, -offset, Color.argb(127, 0, 0, 0));
+		}
+	}
+
+	private void drawNeedleShadow(final Canvas canvas, final boolean shadowOnLeft) {
+		// Same placement as the shadow layer, without the blur
+		final float offset = 0.005f * mUnitScale;
+		if (shadowOnLeft) {
+			canvas.translate(-offset, offset);
+			canvas.drawPath(mNeedleLeftPixelPath, mNeedleShadowPaint);
+			canvas.translate(offset, -offset);
+		} else {
+			canvas.translate(offset, -offset);
+			canvas.drawPath(mNeedleRightPixelPath, mNeedleShadowPaint);
+			canvas.translate(-offset, offset);
+		}
+	}
+
+	private float getAngleForValue(final float value) {
+        return mStyle.mScaleLayout.getAngleForValue(value) % 360;
+	}
+
+	/**
+	 * Computes what changes when the needle moves between the two values: the area it sweeps and,
+	 * if it shows the value, the readout. Repainting only that area saves fill rate in software
+	 * rendering; the hardware renderer redraws whole views from API 21.
+	 *
+	 * @param needleShown whether the needle is drawn at all
+	 * @return false if the area can't be told, in which case the whole gauge has to be repainted
+	 */
+	public boolean getDirtyRect(final float fromValue, final float toValue, final boolean needleShown, final Rect out) {
+		final float fromAngle = mStyle.mScaleLayout.getAngleForValue(fromValue);
+		final float toAngle = mStyle.mScaleLayout.getAngleForValue(toValue);
+		float startAngle = Math.min(fromAngle, toAngle);
+		float sweepAngle = Math.abs(toAngle - fromAngle);
+		if (Float.isNaN(startAngle) || Float.isNaN(sweepAngle) || 0 == mUnitScale) {
+			return false;
+		}
+
+		out.setEmpty();
+		if (mStyle.mShowNeedle && needleShown) {
+			if (null != mNeedleSprite && mNeedleSprite.getAngleSteps() > 0) {
+				// The sprite may be drawn up to half an angle step away
+				final float halfStep = 180.0f / mNeedleSprite.getAngleSteps();
+				startAngle -= halfStep;
+				sweepAngle += 2 * halfStep;
+			}
+			getSweepRect(startAngle, sweepAngle, mStyle.mNeedleHeight, Math.max(mStyle.mNeedleWidth, 0.04f), out);
+		}
+		if (mStyle.mShowText && TextUtils.isEmpty(mStyle.mTextValue)) {
+			out.union(mTextRect);
+		}
+		return true;
+	}
+
+	/**
+	 * Computes the area an additional needle sweeps moving between the two values.
+	 *
+	 * @return false if the area can't be told, in which case the whole gauge has to be repainted
+	 */
+	public boolean getDirtyRect(final GaugeNeedle needle, final float fromValue, final float toValue, final Rect out) {
+		final float fromAngle = mStyle.mScaleLayout.getAngleForValue(fromValue);
+		final float toAngle = mStyle.mScaleLayout.getAngleForValue(toValue);
+		final float startAngle = Math.min(fromAngle, toAngle);
+		final float sweepAngle = Math.abs(toAngle - fromAngle);
+		if (Float.isNaN(startAngle) || Float.isNaN(sweepAngle) || 0 == mUnitScale) {
+			return false;
+		}
+		getSweepRect(startAngle, sweepAngle, needle.getHeight(), needle.getWidth(), out);
+		return true;
+	}
+
+	private void getSweepRect(final float startAngle, final float sweepAngle, final float height, final float hub,
+			final Rect out) {
+		NeedleSweep.getBounds(toPixelX(GaugeView.CENTER), toPixelY(GaugeView.CENTER), (height + SWEEP_MARGIN)
+				* mUnitScale, (hub + SWEEP_MARGIN) * mUnitScale, startAngle, Math.min(sweepAngle, 360), mSweepBounds);
+		out.set((int) mSweepBounds[0] - 1, (int) mSweepBounds[1] - 1, (int) Math.ceil(mSweepBounds[2]) + 1,
+				(int) Math.ceil(mSweepBounds[3]) + 1);
+	}
+
+	/**
+	 * @return the value limited to the scale, if the gauge shows one
+	 */
+	public float clampValue(final float value) {
+		if (mStyle.mShowScale || mStyle.mShowRanges) {
+			if (value < mStyle.mScaleStartValue) {
+				return mStyle.mScaleStartValue;
+			} else if (value > mStyle.mScaleEndValue) {
+				return mStyle.mScaleEndValue;
+			}
+		}
+		return value;
+	}
+
+}
@@ -0,0 +1,785 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.WeakHashMap;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Paint.Align;
+import android.graphics.Path;
+import android.graphics.Picture;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+import android.util.AttributeSet;
+
+/**
+ * The look of a dial gauge, compiled once from the gauge attributes or a {@link Builder}: the
+ * attributes are parsed, and the unit-space rects, needle paths and scale geometry are laid out
+ * here. A style is immutable, so any number of {@link GaugeRenderer}s on any threads share it by
+ * reference.
+ * <p>
+ * Styles compiled from a style resource are cached, see {@link #obtain}, so inflating many gauges
+ * of the same style only compiles it once.
+ */
+public final class GaugeStyle {
+
+	// Per theme, as style resources may refer to theme attributes, then keyed by the style
+	// resources. Cleared when the configuration changes
+	private static final WeakHashMap<Resources.Theme, HashMap<Long, GaugeStyle>> sCache = new WeakHashMap<Resources.Theme, HashMap<Long, GaugeStyle>>();
+	private static Configuration sCacheConfiguration;
+
+	// Index of the background format in the signature, see getSignature()
+	private static final int SIGNATURE_BACKGROUND_FORMAT = 15;
+
+	final boolean mShowOuterShadow;
+	final boolean mShowOuterBorder;
+	final boolean mShowOuterRim;
+	final boolean mShowInnerRim;
+	final boolean mShowScale;
+	final boolean mShowRanges;
+	final boolean mShowNeedle;
+	final boolean mShowText;
+
+	final float mOuterShadowWidth;
+	final float mOuterBorderWidth;
+	final float mOuterRimWidth;
+	final float mInnerRimWidth;
+	final float mInnerRimBorderWidth;
+	final float mNeedleWidth;
+	final float mNeedleHeight;
+	final int mNeedleRenderer;
+	final int mNeedleSpriteAngles;
+
+	final float mScalePosition;
+	final float mScaleStartValue;
+	final float mScaleEndValue;
+	final float mScaleStartAngle;
+	final float mScaleEndAngle;
+	final int mDivisions;
+	final int mSubdivisions;
+	final float[] mRangeValues;
+	final int[] mRangeColors;
+	final int mBackgroundFormat;
+
+	final String mTextValue;
+	final String mTextUnit;
+	final int mTextValueColor;
+	final int mTextUnitColor;
+	final int mTextShadowColor;
+	final float mTextValueSize;
+	final float mTextUnitSize;
+	final int mTextValueDecimals;
+	final boolean mTextValueShowSign;
+
+	// Decodes the rim texture, see RimTexture
+	final Resources mResources;
+
+	// *--------------------------------------------------------------------- *//
+	// Compiled from the above, never modified after the constructor
+
+	final int[] mSignature;
+
+	final RectF mOuterShadowRect;
+	final RectF mOuterBorderRect;
+	final RectF mOuterRimRect;
+	final RectF mInnerRimRect;
+	final RectF mInnerRimBorderRect;
+	final RectF mFaceRect;
+	final RectF mScaleRect;
+
+	final Path mNeedleLeftPath;
+	final Path mNeedleRightPath;
+
+	final ScaleLayout mScaleLayout;
+	final RangeIndex mRangeIndex;
+
+	// Scale ticks as drawLines() point arrays and labels as paths, one of each per range
+	final float[][] mTickLines;
+	final Path[] mLabelPaths;
+
+	// Recorded on first use, see getBackgroundPicture()
+	private Picture mBackgroundPicture;
+
+	private GaugeStyle(final Builder builder) {
+		mShowOuterShadow = builder.mShowOuterShadow;
+		mShowOuterBorder = builder.mShowOuterBorder;
+		mShowOuterRim = builder.mShowOuterRim;
+		mShowInnerRim = builder.mShowInnerRim;
+		mShowScale = builder.mShowScale;
+		mShowRanges = builder.mShowRanges;
+		mShowNeedle = builder.mShowNeedle;
+		mShowText = builder.mShowText;
+
+		mOuterShadowWidth = mShowOuterShadow ? builder.mOuterShadowWidth : 0.0f;
+		mOuterBorderWidth = mShowOuterBorder ? builder.mOuterBorderWidth : 0.0f;
+		mOuterRimWidth = mShowOuterRim ? builder.mOuterRimWidth : 0.0f;
+		mInnerRimWidth = mShowInnerRim ? builder.mInnerRimWidth : 0.0f;
+		mInnerRimBorderWidth = mShowInnerRim ? builder.mInnerRimBorderWidth : 0.0f;
+		mNeedleWidth = builder.mNeedleWidth;
+		mNeedleHeight = builder.mNeedleHeight;
+		mNeedleRenderer = builder.mNeedleRenderer;
+		mNeedleSpriteAngles = builder.mNeedleSpriteAngles;
+
+		mScalePosition = (mShowScale || mShowRanges) ? builder.mScalePosition : 0.0f;
+		mScaleStartValue = builder.mScaleStartValue;
+		mScaleEndValue = builder.mScaleEndValue;
+		mScaleStartAngle = builder.mScaleStartAngle;
+		mScaleEndAngle = builder.mScaleEndAngle;
+		mDivisions = builder.mDivisions;
+		mSubdivisions = builder.mSubdivisions;
+		// The builder copies the arrays it's given, so they can be shared with it
+		mRangeValues = builder.mRangeValues;
+		mRangeColors = builder.mRangeColors;
+		mBackgroundFormat = builder.mBackgroundFormat;
+
+		mTextValue = builder.mTextValue;
+		mTextUnit = builder.mTextUnit;
+		mTextValueColor = builder.mTextValueColor;
+		mTextUnitColor = builder.mTextUnitColor;
+		mTextShadowColor = builder.mTextShadowColor;
+		mTextValueSize = builder.mTextValueSize;
+		mTextUnitSize = builder.mTextUnitSize;
+		mTextValueDecimals = builder.mTextValueDecimals;
+		mTextValueShowSign = builder.mTextValueShowSign;
+
+		mResources = builder.mResources;
+
+		mSignature = computeSignature();
+
+		// The drawing area is a rectangle of width 1 and height 1,
+		// where (0,0) is the top left corner of the canvas.
+		// Note that on Canvas X axis points to right, while the Y axis points downwards.
+		mOuterShadowRect = new RectF(GaugeView.LEFT, GaugeView.TOP, GaugeView.RIGHT, GaugeView.BOTTOM);
+		mOuterBorderRect = inset(mOuterShadowRect, mOuterShadowWidth);
+		mOuterRimRect = inset(mOuterBorderRect, mOuterBorderWidth);
+		mInnerRimRect = inset(mOuterRimRect, mOuterRimWidth);
+		mInnerRimBorderRect = inset(mInnerRimRect, mInnerRimBorderWidth);
+		mFaceRect = inset(mInnerRimRect, mInnerRimWidth);
+		mScaleRect = inset(mFaceRect, mScalePosition);
+
+		mNeedleLeftPath = mShowNeedle ? createNeedlePath(-mNeedleWidth) : null;
+		mNeedleRightPath = mShowNeedle ? createNeedlePath(mNeedleWidth) : null;
+
+		mScaleLayout = ScaleLayout.forRange(mScaleStartValue, mScaleEndValue, mScaleStartAngle, mScaleEndAngle,
+				mDivisions, mSubdivisions);
+		if (mShowRanges) {
+			mRangeIndex = new RangeIndex(mRangeValues, mRangeColors, mScaleLayout);
+			mTickLines = new float[mRangeValues.length][];
+			mLabelPaths = new Path[mRangeValues.length];
+			layoutScale();
+		} else {
+			mRangeIndex = null;
+			mTickLines = null;
+			mLabelPaths = null;
+		}
+	}
+
+	/**
+	 * Gets the style of the given attributes. Styles that only come from style resources, i.e.
+	 * without gauge attributes in the layout and without a default style attribute, are compiled
+	 * once per resource, theme and configuration and then shared.
+	 *
+	 * @see GaugeView#GaugeView(Context, AttributeSet, int)
+	 */
+	public static GaugeStyle obtain(final Context context, final AttributeSet attrs, final int defStyleAttr,
+			final int defStyleRes) {
+		if (0 != defStyleAttr || hasGaugeAttributes(attrs)) {
+			// Depends on the theme or on the layout, neither of which can be told apart cheaply
+			return fromAttributes(context, attrs, defStyleAttr, defStyleRes);
+		}
+
+		final int styleAttr = null != attrs ? attrs.getStyleAttribute() : 0;
+		final Long key = Long.valueOf(((long) styleAttr << 32) | (defStyleRes & 0xffffffffL));
+		final Resources.Theme theme = context.getTheme();
+		final Configuration configuration = context.getResources().getConfiguration();
+		synchronized (sCache) {
+			if (!configuration.equals(sCacheConfiguration)) {
+				// Strings, dimensions and colors may all be different now
+				sCache.clear();
+				sCacheConfiguration = new Configuration(configuration);
+			}
+			final HashMap<Long, GaugeStyle> styles = sCache.get(theme);
+			final GaugeStyle style = null != styles ? styles.get(key) : null;
+			if (null != style) {
+				return style;
+			}
+		}
+
+		final GaugeStyle style = fromAttributes(context, attrs, 0, defStyleRes);
+		synchronized (sCache) {
+			HashMap<Long, GaugeStyle> styles = sCache.get(theme);
+			if (null == styles) {
+				styles = new HashMap<Long, GaugeStyle>();
+				sCache.put(theme, styles);
+			}
+			// Keep the first one if several threads compiled it at once
+			final GaugeStyle cached = styles.get(key);
+			if (null != cached) {
+				return cached;
+			}
+			styles.put(key, style);
+		}
+		return style;
+	}
+
+	/**
+	 * Gets the style of a style resource, see {@link #obtain}.
+	 *
+	 * @param styleRes a style with the gauge attributes, or 0 for the defaults
+	 */
+	public static GaugeStyle fromResource(final Context context, final int styleRes) {
+		return obtain(context, null, 0, styleRes);
+	}
+
+	/**
+	 * Forgets the styles compiled from resources, e.g. after changing resources the configuration
+	 * doesn't know about.
+	 */
+	public static void clearCache() {
+		synchronized (sCache) {
+			sCache.clear();
+		}
+	}
+
+	private static boolean hasGaugeAttributes(final AttributeSet attrs) {
+		if (null == attrs) {
+			return false;
+		}
+		final int[] styleable = R.styleable.GaugeView;
+		for (int i = attrs.getAttributeCount() - 1; i >= 0; i--) {
+			// Styleable arrays are sorted by resource id
+			if (Arrays.binarySearch(styleable, attrs.getAttributeNameResource(i)) >= 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static GaugeStyle fromAttributes(final Context context, final AttributeSet attrs, final int defStyleAttr,
+			final int defStyleRes) {
+		final Builder builder = new Builder(context);
+		final TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.GaugeView, defStyleAttr, defStyleRes);
+		builder.mShowOuterShadow = a.getBoolean(R.styleable.GaugeView_showOuterShadow, GaugeView.SHOW_OUTER_SHADOW);
+		builder.mShowOuterBorder = a.getBoolean(R.styleable.GaugeView_showOuterBorder, GaugeView.SHOW_OUTER_BORDER);
+		builder.mShowOuterRim = a.getBoolean(R.styleable.GaugeView_showOuterRim, GaugeView.SHOW_OUTER_RIM);
+		builder.mShowInnerRim = a.getBoolean(R.styleable.GaugeView_showInnerRim, GaugeView.SHOW_INNER_RIM);
+		builder.mShowNeedle = a.getBoolean(R.styleable.GaugeView_showNeedle, GaugeView.SHOW_NEEDLE);
+		builder.mShowScale = a.getBoolean(R.styleable.GaugeView_showScale, GaugeView.SHOW_SCALE);
+		builder.mShowRanges = a.getBoolean(R.styleable.GaugeView_showRanges, GaugeView.SHOW_RANGES);
+		builder.mShowText = a.getBoolean(R.styleable.GaugeView_showText, GaugeView.SHOW_TEXT);
+
+		builder.mOuterShadowWidth = a.getFloat(R.styleable.GaugeView_outerShadowWidth, GaugeView.OUTER_SHADOW_WIDTH);
+		builder.mOuterBorderWidth = a.getFloat(R.styleable.GaugeView_outerBorderWidth, GaugeView.OUTER_BORDER_WIDTH);
+		builder.mOuterRimWidth = a.getFloat(R.styleable.GaugeView_outerRimWidth, GaugeView.OUTER_RIM_WIDTH);
+		builder.mInnerRimWidth = a.getFloat(R.styleable.GaugeView_innerRimWidth, GaugeView.INNER_RIM_WIDTH);
+		builder.mInnerRimBorderWidth = a.getFloat(R.styleable.GaugeView_innerRimBorderWidth,
+				GaugeView.INNER_RIM_BORDER_WIDTH);
+
+		builder.mNeedleWidth = a.getFloat(R.styleable.GaugeView_needleWidth, GaugeView.NEEDLE_WIDTH);
+		builder.mNeedleHeight = a.getFloat(R.styleable.GaugeView_needleHeight, GaugeView.NEEDLE_HEIGHT);
+		builder.mNeedleRenderer = a.getInt(R.styleable.GaugeView_needleRenderer, GaugeView.NEEDLE_RENDERER_PATH);
+		builder.mNeedleSpriteAngles = a.getInteger(R.styleable.GaugeView_needleSpriteAngles, 0);
+
+		builder.mScalePosition = a.getFloat(R.styleable.GaugeView_scalePosition, GaugeView.SCALE_POSITION);
+		builder.mScaleStartValue = a.getFloat(R.styleable.GaugeView_scaleStartValue, GaugeView.SCALE_START_VALUE);
+		builder.mScaleEndValue = a.getFloat(R.styleable.GaugeView_scaleEndValue, GaugeView.SCALE_END_VALUE);
+		builder.mScaleStartAngle = a.getFloat(R.styleable.GaugeView_scaleStartAngle, GaugeView.SCALE_START_ANGLE);
+		builder.mScaleEndAngle = a.getFloat(R.styleable.GaugeView_scaleEndAngle, 360.0f - builder.mScaleStartAngle);
+
+		builder.mBackgroundFormat = a.getInt(R.styleable.GaugeView_backgroundFormat,
+				GaugeView.BACKGROUND_FORMAT_ARGB_8888);
+
+		builder.mDivisions = a.getInteger(R.styleable.GaugeView_divisions, GaugeView.SCALE_DIVISIONS);
+		builder.mSubdivisions = a.getInteger(R.styleable.GaugeView_subdivisions, GaugeView.SCALE_SUBDIVISIONS);
+
+		builder.mTextShadowColor = a.getColor(R.styleable.GaugeView_textShadowColor, GaugeView.TEXT_SHADOW_COLOR);
+		if (builder.mShowRanges) {
+			readRanges(builder, a.getTextArray(R.styleable.GaugeView_rangeValues),
+					a.getTextArray(R.styleable.GaugeView_rangeColors));
+		}
+
+		if (builder.mShowText) {
+			final int textValueId = a.getResourceId(R.styleable.GaugeView_textValue, 0);
+			final String textValue = a.getString(R.styleable.GaugeView_textValue);
+			builder.mTextValue = (0 < textValueId) ? context.getString(textValueId) : (null != textValue) ? textValue : "";
+
+			final int textUnitId = a.getResourceId(R.styleable.GaugeView_textUnit, 0);
+			final String textUnit = a.getString(R.styleable.GaugeView_textUnit);
+			builder.mTextUnit = (0 < textUnitId) ? context.getString(textUnitId) : (null != textUnit) ? textUnit : "";
+			builder.mTextValueColor = a.getColor(R.styleable.GaugeView_textValueColor, GaugeView.TEXT_VALUE_COLOR);
+			builder.mTextUnitColor = a.getColor(R.styleable.GaugeView_textUnitColor, GaugeView.TEXT_UNIT_COLOR);
+
+			builder.mTextValueSize = a.getFloat(R.styleable.GaugeView_textValueSize, GaugeView.TEXT_VALUE_SIZE);
+			builder.mTextUnitSize = a.getFloat(R.styleable.GaugeView_textUnitSize, GaugeView.TEXT_UNIT_SIZE);
+			builder.mTextValueDecimals = a.getInteger(R.styleable.GaugeView_textValueDecimals, 0);
+			builder.mTextValueShowSign = a.getBoolean(R.styleable.GaugeView_textValueShowSign, false);
+		}
+
+		a.recycle();
+		return builder.build();
+	}
+
+	private static void readRanges(final Builder builder, final CharSequence[] rangeValues,
+			final CharSequence[] rangeColors) {
+		final int rangeValuesLength = null != rangeValues ? rangeValues.length : GaugeView.RANGE_VALUES.length;
+		final int rangeColorsLength = null != rangeColors ? rangeColors.length : GaugeView.RANGE_COLORS.length;
+		if (rangeValuesLength != rangeColorsLength) {
+			throw new IllegalArgumentException("The ranges and colors arrays must have the same length.");
+		}
+
+		final int length = rangeValuesLength;
+		if (null != rangeValues) {
+			builder.mRangeValues = new float[length];
+			for (int i = 0; i < length; i++) {
+				builder.mRangeValues[i] = Float.parseFloat(rangeValues[i].toString());
+			}
+		}
+		if (null != rangeColors) {
+			builder.mRangeColors = new int[length];
+			for (int i = 0; i < length; i++) {
+				builder.mRangeColors[i] = Color.parseColor(rangeColors[i].toString());
+			}
+		}
+	}
+
+	private static RectF inset(final RectF rect, final float width) {
+		return new RectF(rect.left + width, rect.top + width, rect.right - width, rect.bottom - width);
+	}
+
+	/**
+	 * One half of the needle, pointing up from the center, to the left for negative widths.
+	 */
+	private Path createNeedlePath(final float width) {
+		final float x = 0.5f, y = 0.5f;
+		final Path path = new Path();
+		path.moveTo(x, y);
+		path.lineTo(x + width, y);
+		path.lineTo(x, y - mNeedleHeight);
+		path.lineTo(x, y);
+		path.lineTo(x + width, y);
+		return path;
+	}
+
+	/**
+	 * Collects every attribute that shows up in the background, so gauges that would render the
+	 * same background can share it through the {@link GaugeBackgroundCache}.
+	 */
+	private int[] computeSignature() {
+		final int ranges = mShowRanges ? mRangeValues.length : 0;
+		final int[] signature = new int[16 + 2 * ranges];
+		int i = 0;
+		signature[i++] = (mShowOuterShadow ? 1 : 0) | (mShowOuterBorder ? 2 : 0) | (mShowOuterRim ? 4 : 0)
+				| (mShowInnerRim ? 8 : 0) | (mShowRanges ? 16 : 0);
+		signature[i++] = Float.floatToIntBits(mOuterShadowWidth);
+		signature[i++] = Float.floatToIntBits(mOuterBorderWidth);
+		signature[i++] = Float.floatToIntBits(mOuterRimWidth);
+		signature[i++] = Float.floatToIntBits(mInnerRimWidth);
+		signature[i++] = Float.floatToIntBits(mInnerRimBorderWidth);
+		signature[i++] = Float.floatToIntBits(mScalePosition);
+		signature[i++] = Float.floatToIntBits(mScaleStartValue);
+		signature[i++] = Float.floatToIntBits(mScaleEndValue);
+		signature[i++] = Float.floatToIntBits(mScaleStartAngle);
+		signature[i++] = Float.floatToIntBits(mScaleEndAngle);
+		signature[i++] = mDivisions;
+		signature[i++] = mSubdivisions;
+		signature[i++] = mShowRanges ? mTextShadowColor : 0;
+		signature[i++] = ranges;
+		signature[i++] = mBackgroundFormat;
+		for (int r = 0; r < ranges; r++) {
+			signature[i++] = Float.floatToIntBits(mRangeValues[r]);
+			signature[i++] = mRangeColors[r];
+		}
+		return signature;
+	}
+
+	/**
+	 * @return the background recorded by {@link GaugeBackgroundPainter#record()} on first use, and
+	 *         replayed by every gauge of the style at any size
+	 */
+	synchronized Picture getBackgroundPicture() {
+		if (null == mBackgroundPicture) {
+			mBackgroundPicture = new GaugeBackgroundPainter(this, Float.MAX_VALUE).record();
+		}
+		return mBackgroundPicture;
+	}
+
+	/**
+	 * @return the signature of the background of this style in the given format, shared if it is
+	 *         the format of the style
+	 */
+	int[] getSignature(final int backgroundFormat) {
+		if (backgroundFormat == mBackgroundFormat) {
+			return mSignature;
+		}
+		final int[] signature = mSignature.clone();
+		signature[SIGNATURE_BACKGROUND_FORMAT] = backgroundFormat;
+		return signature;
+	}
+
+	/**
+	 * Lays out the ticks and labels once, so drawing the scale takes two calls per range no matter
+	 * how fine it is.
+	 */
+	private void layoutScale() {
+		final ScaleLayout layout = mScaleLayout;
+		final int ranges = mTickLines.length;
+		final int ticks = layout.getTickCount();
+
+		final int[] lineCounts = new int[ranges];
+		for (int i = 0; i < ticks; i++) {
+			lineCounts[mRangeIndex.indexOfTick(i)]++;
+		}
+		for (int r = 0; r < ranges; r++) {
+			mTickLines[r] = new float[4 * lineCounts[r]];
+			mLabelPaths[r] = new Path();
+			lineCounts[r] = 0;
+		}
+
+		// Labels only depend on the text settings of the range paints, which are the same for all
+		final Paint paint = new Paint(Paint.LINEAR_TEXT_FLAG | Paint.ANTI_ALIAS_FLAG);
+		paint.setTypeface(Typeface.SANS_SERIF);
+		paint.setTextAlign(Align.CENTER);
+
+		final float y1 = mScaleRect.top;
+		final float magnifier = 1000f;
+		final ValueFormatter formatter = new ValueFormatter(0, false, '.');
+		final Path label = new Path();
+		final Matrix matrix = new Matrix();
+		for (int i = 0; i < ticks; i++) {
+			final int range = mRangeIndex.indexOfTick(i);
+			if (layout.isDivision(i)) {
+				// Draw a division tick, with the text 0.045 away from it
+				layout.getTickLine(i, y1, 0.045f, mTickLines[range], 4 * lineCounts[range]++);
+
+				// Lay the text out magnified, for the same reasons as GaugeView.drawTextOnCanvasWithMagnifier()
+				final int length = formatter.format(layout.getTickValue(i));
+				paint.setTextSize(GaugeRenderer.RANGE_TEXT_SIZE * magnifier);
+				paint.getTextPath(formatter.getChars(), 0, length, 0.5f * magnifier, (y1 + 0.09f) * magnifier, label);
+
+				matrix.setScale(1f / magnifier, 1f / magnifier);
+				matrix.postRotate(layout.getTickAngle(i), 0.5f, 0.5f);
+				label.transform(matrix);
+				mLabelPaths[range].addPath(label);
+			} else {
+				// Draw a subdivision tick
+				layout.getTickLine(i, y1, 0.015f, mTickLines[range], 4 * lineCounts[range]++);
+			}
+		}
+	}
+
+	public boolean isShowNeedle() {
+		return mShowNeedle;
+	}
+
+	public boolean isShowText() {
+		return mShowText;
+	}
+
+	public boolean isShowScale() {
+		return mShowScale;
+	}
+
+	public boolean isShowRanges() {
+		return mShowRanges;
+	}
+
+	public float getScaleStartValue() {
+		return mScaleStartValue;
+	}
+
+	public float getScaleEndValue() {
+		return mScaleEndValue;
+	}
+
+	public int getBackgroundFormat() {
+		return mBackgroundFormat;
+	}
+
+	public int getNeedleRenderer() {
+		return mNeedleRenderer;
+	}
+
+	/**
+	 * @return the ranges of the scale, or null if it doesn't show any
+	 */
+	public RangeIndex getRangeIndex() {
+		return mRangeIndex;
+	}
+
+	public ScaleLayout getScaleLayout() {
+		return mScaleLayout;
+	}
+
+	/**
+	 * Assembles a {@link GaugeStyle}. It starts with the defaults of {@link GaugeView}, or with the
+	 * settings of another style.
+	 */
+	public static final class Builder {
+
+		private final Resources mResources;
+
+		private boolean mShowOuterShadow = GaugeView.SHOW_OUTER_SHADOW;
+		private boolean mShowOuterBorder = GaugeView.SHOW_OUTER_BORDER;
+		private boolean mShowOuterRim = GaugeView.SHOW_OUTER_RIM;
+		private boolean mShowInnerRim = GaugeView.SHOW_INNER_RIM;
+		private boolean mShowScale = GaugeView.SHOW_SCALE;
+		private boolean mShowRanges = GaugeView.SHOW_RANGES;
+		private boolean mShowNeedle = GaugeView.SHOW_NEEDLE;
+		private boolean mShowText = GaugeView.SHOW_TEXT;
+
+		private float mOuterShadowWidth = GaugeView.OUTER_SHADOW_WIDTH;
+		private float mOuterBorderWidth = GaugeView.OUTER_BORDER_WIDTH;
+		private float mOuterRimWidth = GaugeView.OUTER_RIM_WIDTH;
+		private float mInnerRimWidth = GaugeView.INNER_RIM_WIDTH;
+		private float mInnerRimBorderWidth = GaugeView.INNER_RIM_BORDER_WIDTH;
+		private float mNeedleWidth = GaugeView.NEEDLE_WIDTH;
+		private float mNeedleHeight = GaugeView.NEEDLE_HEIGHT;
+		private int mNeedleRenderer = GaugeView.NEEDLE_RENDERER_PATH;
+		private int mNeedleSpriteAngles;
+
+		private float mScalePosition = GaugeView.SCALE_POSITION;
+		private float mScaleStartValue = GaugeView.SCALE_START_VALUE;
+		private float mScaleEndValue = GaugeView.SCALE_END_VALUE;
+		private float mScaleStartAngle = GaugeView.SCALE_START_ANGLE;
+		private float mScaleEndAngle = 360.0f - GaugeView.SCALE_START_ANGLE;
+		private int mDivisions = GaugeView.SCALE_DIVISIONS;
+		private int mSubdivisions = GaugeView.SCALE_SUBDIVISIONS;
+		// Copies, so changing the public defaults can't change a built style
+		private float[] mRangeValues = GaugeView.RANGE_VALUES.clone();
+		private int[] mRangeColors = GaugeView.RANGE_COLORS.clone();
+		private int mBackgroundFormat = GaugeView.BACKGROUND_FORMAT_ARGB_8888;
+
+		private String mTextValue = "";
+		private String mTextUnit = "";
+		private int mTextValueColor = GaugeView.TEXT_VALUE_COLOR;
+		private int mTextUnitColor = GaugeView.TEXT_UNIT_COLOR;
+		private int mTextShadowColor = GaugeView.TEXT_SHADOW_COLOR;
+		private float mTextValueSize = GaugeView.TEXT_VALUE_SIZE;
+		private float mTextUnitSize = GaugeView.TEXT_UNIT_SIZE;
+		private int mTextValueDecimals;
+		private boolean mTextValueShowSign;
+
+		/**
+		 * @param context provides the rim texture
+		 */
+		public Builder(final Context context) {
+			mResources = context.getResources();
+		}
+
+		/**
+		 * Starts with the settings of the style.
+		 */
+		public Builder(final Context context, final GaugeStyle style) {
+			this(context);
+
+			mShowOuterShadow = style.mShowOuterShadow;
+			mShowOuterBorder = style.mShowOuterBorder;
+			mShowOuterRim = style.mShowOuterRim;
+			mShowInnerRim = style.mShowInnerRim;
+			mShowScale = style.mShowScale;
+			mShowRanges = style.mShowRanges;
+			mShowNeedle = style.mShowNeedle;
+			mShowText = style.mShowText;
+
+			// Hidden parts have no width in the style, keep the defaults for them
+			if (mShowOuterShadow) {
+				mOuterShadowWidth = style.mOuterShadowWidth;
+			}
+			if (mShowOuterBorder) {
+				mOuterBorderWidth = style.mOuterBorderWidth;
+			}
+			if (mShowOuterRim) {
+				mOuterRimWidth = style.mOuterRimWidth;
+			}
+			if (mShowInnerRim) {
+				mInnerRimWidth = style.mInnerRimWidth;
+				mInnerRimBorderWidth = style.mInnerRimBorderWidth;
+			}
+			mNeedleWidth = style.mNeedleWidth;
+			mNeedleHeight = style.mNeedleHeight;
+			mNeedleRenderer = style.mNeedleRenderer;
+			mNeedleSpriteAngles = style.mNeedleSpriteAngles;
+
+			if (mShowScale || mShowRanges) {
+				mScalePosition = style.mScalePosition;
+			}
+			mScaleStartValue = style.mScaleStartValue;
+			mScaleEndValue = style.mScaleEndValue;
+			mScaleStartAngle = style.mScaleStartAngle;
+			mScaleEndAngle = style.mScaleEndAngle;
+			mDivisions = style.mDivisions;
+			mSubdivisions = style.mSubdivisions;
+			mRangeValues = style.mRangeValues;
+			mRangeColors = style.mRangeColors;
+			mBackgroundFormat = style.mBackgroundFormat;
+
+			mTextValue = style.mTextValue;
+			mTextUnit = style.mTextUnit;
+			mTextValueColor = style.mTextValueColor;
+			mTextUnitColor = style.mTextUnitColor;
+			mTextShadowColor = style.mTextShadowColor;
+			mTextValueSize = style.mTextValueSize;
+			mTextUnitSize = style.mTextUnitSize;
+			mTextValueDecimals = style.mTextValueDecimals;
+			mTextValueShowSign = style.mTextValueShowSign;
+		}
+
+		public Builder setShowOuterShadow(final boolean show) {
+			mShowOuterShadow = show;
+			return this;
+		}
+
+		public Builder setShowOuterBorder(final boolean show) {
+			mShowOuterBorder = show;
+			return this;
+		}
+
+		public Builder setShowOuterRim(final boolean show) {
+			mShowOuterRim = show;
+			return this;
+		}
+
+		public Builder setShowInnerRim(final boolean show) {
+			mShowInnerRim = show;
+			return this;
+		}
+
+		public Builder setShowScale(final boolean show) {
+			mShowScale = show;
+			return this;
+		}
+
+		public Builder setShowRanges(final boolean show) {
+			mShowRanges = show;
+			return this;
+		}
+
+		public Builder setShowNeedle(final boolean show) {
+			mShowNeedle = show;
+			return this;
+		}
+
+		public Builder setShowText(final boolean show) {
+			mShowText = show;
+			return this;
+		}
+
+		/**
+		 * Widths are fractions of the size of the gauge.
+		 */
+		public Builder setRimWidths(final float outerShadow, final float outerBorder, final float outerRim,
+				final float innerRim, final float innerRimBorder) {
+			mOuterShadowWidth = outerShadow;
+			mOuterBorderWidth = outerBorder;
+			mOuterRimWidth = outerRim;
+			mInnerRimWidth = innerRim;
+			mInnerRimBorderWidth = innerRimBorder;
+			return this;
+		}
+
+		public Builder setNeedleSize(final float width, final float height) {
+			mNeedleWidth = width;
+			mNeedleHeight = height;
+			return this;
+		}
+
+		/**
+		 * @see GaugeRenderer#setNeedleRenderer(int, int)
+		 */
+		public Builder setNeedleRenderer(final int needleRenderer, final int spriteAngles) {
+			mNeedleRenderer = needleRenderer;
+			mNeedleSpriteAngles = spriteAngles;
+			return this;
+		}
+
+		public Builder setScale(final float startValue, final float endValue, final float startAngle,
+				final float endAngle) {
+			mScaleStartValue = startValue;
+			mScaleEndValue = endValue;
+			mScaleStartAngle = startAngle;
+			mScaleEndAngle = endAngle;
+			return this;
+		}
+
+		public Builder setScalePosition(final float position) {
+			mScalePosition = position;
+			return this;
+		}
+
+		public Builder setDivisions(final int divisions, final int subdivisions) {
+			mDivisions = divisions;
+			mSubdivisions = subdivisions;
+			return this;
+		}
+
+		/**
+		 * @param values the upper bound of every range
+		 * @param colors the color of every range
+		 */
+		public Builder setRanges(final float[] values, final int[] colors) {
+			if (values.length != colors.length) {
+				throw new IllegalArgumentException("The ranges and colors arrays must have the same length.");
+			}
+			mRangeValues = values.clone();
+			mRangeColors = colors.clone();
+			return this;
+		}
+
+		/**
+		 * @see GaugeRenderer#setBackgroundFormat(int)
+		 */
+		public Builder setBackgroundFormat(final int backgroundFormat) {
+			mBackgroundFormat = backgroundFormat;
+			return this;
+		}
+
+		/**
+		 * @param value a fixed text shown instead of the value, or null to show the value
+		 * @param unit shown next to the value, or null
+		 */
+		public Builder setText(final String value, final String unit) {
+			mTextValue = null != value ? value : "";
+			mTextUnit = null != unit ? unit : "";
+			return this;
+		}
+
+		public Builder setTextColors(final int valueColor, final int unitColor, final int shadowColor) {
+			mTextValueColor = valueColor;
+			mTextUnitColor = unitColor;
+			mTextShadowColor = shadowColor;
+			return this;
+		}
+
+		public Builder setTextSizes(final float valueSize, final float unitSize) {
+			mTextValueSize = valueSize;
+			mTextUnitSize = unitSize;
+			return this;
+		}
+
+		/**
+		 * @see GaugeRenderer#setValueFormat
+		 */
+		public Builder setValueFormat(final int decimals, final boolean showSign) {
+			mTextValueDecimals = decimals;
+			mTextValueShowSign = showSign;
+			return this;
+		}
+
+		public GaugeStyle build() {
+			return new GaugeStyle(this);
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+import java.lang.reflect.Method;
+
+import android.os.Build;
+
+/**
+ * Systrace sections and counters of one gauge, named after its label so several gauges can be
+ * told apart in a trace. android.os.Trace is newer than the platform this library compiles
+ * against, so it is called through reflection; where it is missing nothing is traced. Only used
+ * while drawing, on the main thread, so the argument arrays are shared rather than allocated per
+ * call.
+ */
+final class GaugeTrace {
+
+	private static final Method BEGIN_SECTION;
+	private static final Method END_SECTION;
+	private static final Method SET_COUNTER;
+
+	static {
+		Method beginSection = null;
+		Method endSection = null;
+		Method setCounter = null;
+		if (Build.VERSION.SDK_INT >= 18) {
+			try {
+				final Class<?> trace = Class.forName("android.os.Trace");
+				beginSection = trace.getMethod("beginSection", String.class);
+				endSection = trace.getMethod("endSection");
+				if (Build.VERSION.SDK_INT >= 29) {
+					setCounter = trace.getMethod("setCounter", String.class, long.class);
+				}
+			} catch (final Exception e) {
+				beginSection = null;
+				endSection = null;
+				setCounter = null;
+			}
+		}
+		BEGIN_SECTION = beginSection;
+		END_SECTION = endSection;
+		SET_COUNTER = setCounter;
+	}
+
+	private static final Object[] NO_ARGS = new Object[0];
+	private static final Object[] SECTION_ARGS = new Object[1];
+	private static final Object[] COUNTER_ARGS = new Object[2];
+
+	// Names are built once per label
+	final String draw;
+	final String background;
+	final String needle;
+	final String text;
+	final String rebuild;
+	final String framesCounter;
+	final String valueCounter;
+
+	GaugeTrace(final String label) {
+		draw = label + "#onDraw";
+		background = label + "#background";
+		needle = label + "#needle";
+		text = label + "#text";
+		rebuild = label + "#drawGauge";
+		framesCounter = label + ".frames";
+		valueCounter = label + ".value";
+	}
+
+	static void beginSection(final String name) {
+		if (null != BEGIN_SECTION) {
+			SECTION_ARGS[0] = name;
+			invoke(BEGIN_SECTION, SECTION_ARGS);
+		}
+	}
+
+	static void endSection() {
+		if (null != END_SECTION) {
+			invoke(END_SECTION, NO_ARGS);
+		}
+	}
+
+	static void setCounter(final String name, final long value) {
+		if (null != SET_COUNTER) {
+			// The value still has to be boxed, but only where counters are supported
+			COUNTER_ARGS[0] = name;
+			COUNTER_ARGS[1] = Long.valueOf(value);
+			invoke(SET_COUNTER, COUNTER_ARGS);
+		}
+	}
+
+	private static void invoke(final Method method, final Object[] args) {
+		try {
+			method.invoke(null, args);
+		} catch (final Exception e) {
+			// Tracing is best effort
+		}
+	}
+}
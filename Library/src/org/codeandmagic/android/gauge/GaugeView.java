@@ -7,29 +7,21 @@
  *******************************************************************************/
 package org.codeandmagic.android.gauge;
 
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 import android.annotation.TargetApi;
 import android.content.Context;
-import android.content.res.TypedArray;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.BitmapShader;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.ComposeShader;
-import android.graphics.LinearGradient;
-import android.graphics.Matrix;
 import android.graphics.Paint;
-import android.graphics.Paint.Align;
-import android.graphics.Path;
-import android.graphics.PorterDuff;
-import android.graphics.RadialGradient;
-import android.graphics.RectF;
-import android.graphics.Shader.TileMode;
-import android.graphics.Typeface;
+import android.graphics.Rect;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Parcelable;
-import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.view.View;
 
@@ -74,6 +66,22 @@ public class GaugeView extends View {
     public static final int[] RANGE_COLORS = {Color.rgb(231, 32, 43), Color.rgb(232, 111, 33),
                                               Color.rgb(232, 231, 33), Color.rgb(27, 202, 33)};
 
+	public static final int BACKGROUND_FORMAT_ARGB_8888 = 0;
+	// No alpha, the corners around the dial are black
+	public static final int BACKGROUND_FORMAT_RGB_565 = 1;
+	public static final int BACKGROUND_FORMAT_HARDWARE = 2;
+	public static final int BACKGROUND_FORMAT_PICTURE = 3;
+
+	public static final int NEEDLE_RENDERER_PATH = 0;
+	public static final int NEEDLE_RENDERER_SPRITE = 1;
+
+	public static final int SAMPLE_BUFFER_CAPACITY = 256;
+
+	public static final int HISTORY_NONE = 0;
+	public static final int HISTORY_BAND = 1;
+	public static final int HISTORY_GHOSTS = 2;
+	public static final int HISTORY_CAPACITY = 256;
+
 	public static final int TEXT_SHADOW_COLOR = Color.argb(100, 0, 0, 0);
 	public static final int TEXT_VALUE_COLOR = Color.WHITE;
 	public static final int TEXT_UNIT_COLOR = Color.WHITE;
@@ -81,94 +89,62 @@ public class GaugeView extends View {
 	public static final float TEXT_UNIT_SIZE = 0.1f;
 
 	// *--------------------------------------------------------------------- *//
-	// Customizable properties
-	// *--------------------------------------------------------------------- *//
-
-	private boolean mShowOuterShadow;
-	private boolean mShowOuterBorder;
-	private boolean mShowOuterRim;
-	private boolean mShowInnerRim;
-	private boolean mShowScale;
-	private boolean mShowRanges;
-	private boolean mShowNeedle;
-	private boolean mShowText;
-
-	private float mOuterShadowWidth;
-	private float mOuterBorderWidth;
-	private float mOuterRimWidth;
-	private float mInnerRimWidth;
-	private float mInnerRimBorderWidth;
-	private float mNeedleWidth;
-	private float mNeedleHeight;
-
-	private float mScalePosition;
-	private float mScaleStartValue;
-	private float mScaleEndValue;
-	private float mScaleStartAngle;
-    private float mScaleEndAngle;
-	private float[] mRangeValues;
-
-	private int[] mRangeColors;
-	private int mDivisions;
-	private int mSubdivisions;
-
-	private RectF mOuterShadowRect;
-	private RectF mOuterBorderRect;
-	private RectF mOuterRimRect;
-	private RectF mInnerRimRect;
-	private RectF mInnerRimBorderRect;
-	private RectF mFaceRect;
-	private RectF mScaleRect;
-
-	private Bitmap mBackground;
-	private Paint mBackgroundPaint;
-	private Paint mOuterShadowPaint;
-	private Paint mOuterBorderPaint;
-	private Paint mOuterRimPaint;
-	private Paint mInnerRimPaint;
-	private Paint mInnerRimBorderLightPaint;
-	private Paint mInnerRimBorderDarkPaint;
-	private Paint mFacePaint;
-	private Paint mFaceBorderPaint;
-	private Paint mFaceShadowPaint;
-	private Paint[] mRangePaints;
-	private Paint mNeedleRightPaint;
-	private Paint mNeedleLeftPaint;
-	private Paint mNeedleScrewPaint;
-	private Paint mNeedleScrewBorderPaint;
-	private Paint mTextValuePaint;
-	private Paint mTextUnitPaint;
-
-	private String mTextValue;
-	private String mTextUnit;
-	private int mTextValueColor;
-	private int mTextUnitColor;
-	private int mTextShadowColor;
-	private float mTextValueSize;
-	private float mTextUnitSize;
-
-	private Path mNeedleRightPath;
-	private Path mNeedleLeftPath;
 
-	// *--------------------------------------------------------------------- *//
-
-	private float mScaleRotation;
-	private float mDivisionValue;
-	private float mSubdivisionValue;
-	private float mSubdivisionAngle;
+	private final GaugeRenderer mRenderer;
+	private final Rect mDirtyRect = new Rect();
 
 	private float mTargetValue;
 	private float mCurrentValue;
 
-	private float mNeedleVelocity;
-	private float mNeedleAcceleration;
-	private long mNeedleLastMoved = -1;
+	private NeedleAnimator mNeedleAnimator;
 	private boolean mNeedleInitialized;
 
+	// Additional needles, animator needles 1 and up, and the values they are drawn at
+	private GaugeNeedle[] mNeedles = new GaugeNeedle[0];
+	private float[] mNeedleValues = new float[0];
+
+	// Not on screen: the needle doesn't move until the gauge is shown again
+	private boolean mSuspended = true;
+	// The background went back to the shared cache on detach, got again on the next draw
+	private boolean mReleased;
+
+	private final SampleBuffer mSampleBuffer = new SampleBuffer(SAMPLE_BUFFER_CAPACITY);
+	private final SampleReducer mSampleReducer = new SampleReducer();
+	private final AtomicBoolean mSamplesDrainScheduled = new AtomicBoolean();
+	// Of the last frame that had samples, NaN until one has
+	private float mLastFrameMinSample = Float.NaN;
+	private float mLastFrameMaxSample = Float.NaN;
+
+	// Latest value published by postTargetValue(), as float bits
+	private final AtomicInteger mPendingTargetValue = new AtomicInteger();
+	private final AtomicBoolean mPendingTargetValueSet = new AtomicBoolean();
+	private final AtomicLong mCoalescedUpdates = new AtomicLong();
+
+	// Instrumentation, null while disabled
+	private volatile GaugeMetrics mMetrics;
+	private GaugeMetrics.Listener mMetricsListener;
+	private GaugeTrace mTrace;
+	private long mSettleStartTime;
+	private boolean mTargetValueRendered;
+
+	// Null unless the history is shown
+	private ValueHistory mHistory;
+	private int mHistoryMode = HISTORY_NONE;
+	private long mHistoryWindowNanos;
+	private boolean mHistoryRefreshPosted;
+
+	// Null unless the quality is adaptive
+	private QualityGovernor mQualityGovernor;
+	private long mFrameBudgetNanos = QualityGovernor.DEFAULT_FRAME_BUDGET_NANOS;
+	private long mLastFrameTime;
+
 	public GaugeView(final Context context, final AttributeSet attrs, final int defStyle) {
 		super(context, attrs, defStyle);
-		readAttrs(context, attrs, defStyle);
-		init();
+		// No software layer here: the renderer draws everything per frame in pixel space, so it
+		// renders correctly with hardware acceleration
+		mRenderer = new GaugeRenderer(context, attrs, defStyle, 0);
+		mNeedleAnimator = new NeedleAnimator(HandlerFrameClock.create(), mNeedleListener);
+		setAsyncBackground(!isInEditMode());
 	}
 
 	public GaugeView(final Context context, final AttributeSet attrs) {
@@ -179,346 +155,259 @@ public class GaugeView extends View {
 		this(context, null, 0);
 	}
 
-	private void readAttrs(final Context context, final AttributeSet attrs, final int defStyle) {
-		final TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.GaugeView, defStyle, 0);
-		mShowOuterShadow = a.getBoolean(R.styleable.GaugeView_showOuterShadow, SHOW_OUTER_SHADOW);
-		mShowOuterBorder = a.getBoolean(R.styleable.GaugeView_showOuterBorder, SHOW_OUTER_BORDER);
-		mShowOuterRim = a.getBoolean(R.styleable.GaugeView_showOuterRim, SHOW_OUTER_RIM);
-		mShowInnerRim = a.getBoolean(R.styleable.GaugeView_showInnerRim, SHOW_INNER_RIM);
-		mShowNeedle = a.getBoolean(R.styleable.GaugeView_showNeedle, SHOW_NEEDLE);
-		mShowScale = a.getBoolean(R.styleable.GaugeView_showScale, SHOW_SCALE);
-		mShowRanges = a.getBoolean(R.styleable.GaugeView_showRanges, SHOW_RANGES);
-		mShowText = a.getBoolean(R.styleable.GaugeView_showText, SHOW_TEXT);
-
-		mOuterShadowWidth = mShowOuterShadow ? a.getFloat(R.styleable.GaugeView_outerShadowWidth, OUTER_SHADOW_WIDTH) : 0.0f;
-		mOuterBorderWidth = mShowOuterBorder ? a.getFloat(R.styleable.GaugeView_outerBorderWidth, OUTER_BORDER_WIDTH) : 0.0f;
-		mOuterRimWidth = mShowOuterRim ? a.getFloat(R.styleable.GaugeView_outerRimWidth, OUTER_RIM_WIDTH) : 0.0f;
-		mInnerRimWidth = mShowInnerRim ? a.getFloat(R.styleable.GaugeView_innerRimWidth, INNER_RIM_WIDTH) : 0.0f;
-		mInnerRimBorderWidth = mShowInnerRim ? a.getFloat(R.styleable.GaugeView_innerRimBorderWidth, INNER_RIM_BORDER_WIDTH) : 0.0f;
-
-		mNeedleWidth = a.getFloat(R.styleable.GaugeView_needleWidth, NEEDLE_WIDTH);
-		mNeedleHeight = a.getFloat(R.styleable.GaugeView_needleHeight, NEEDLE_HEIGHT);
-
-		mScalePosition = (mShowScale || mShowRanges) ? a.getFloat(R.styleable.GaugeView_scalePosition, SCALE_POSITION) : 0.0f;
-		mScaleStartValue = a.getFloat(R.styleable.GaugeView_scaleStartValue, SCALE_START_VALUE);
-		mScaleEndValue = a.getFloat(R.styleable.GaugeView_scaleEndValue, SCALE_END_VALUE);
-		mScaleStartAngle = a.getFloat(R.styleable.GaugeView_scaleStartAngle, SCALE_START_ANGLE);
-        mScaleEndAngle = a.getFloat(R.styleable.GaugeView_scaleEndAngle, 360.0f - mScaleStartAngle);
-
-		mDivisions = a.getInteger(R.styleable.GaugeView_divisions, SCALE_DIVISIONS);
-		mSubdivisions = a.getInteger(R.styleable.GaugeView_subdivisions, SCALE_SUBDIVISIONS);
-
-		if (mShowRanges) {
-			mTextShadowColor = a.getColor(R.styleable.GaugeView_textShadowColor, TEXT_SHADOW_COLOR);
-
-            final CharSequence[] rangeValues = a.getTextArray(R.styleable.GaugeView_rangeValues);
-            final CharSequence[] rangeColors = a.getTextArray(R.styleable.GaugeView_rangeColors);
-            readRanges(rangeValues, rangeColors);
-		}
-
-		if (mShowText) {
-			final int textValueId = a.getResourceId(R.styleable.GaugeView_textValue, 0);
-			final String textValue = a.getString(R.styleable.GaugeView_textValue);
-			mTextValue = (0 < textValueId) ? context.getString(textValueId) : (null != textValue) ? textValue : "";
-
-			final int textUnitId = a.getResourceId(R.styleable.GaugeView_textUnit, 0);
-			final String textUnit = a.getString(R.styleable.GaugeView_textUnit);
-			mTextUnit = (0 < textUnitId) ? context.getString(textUnitId) : (null != textUnit) ? textUnit : "";
-			mTextValueColor = a.getColor(R.styleable.GaugeView_textValueColor, TEXT_VALUE_COLOR);
-			mTextUnitColor = a.getColor(R.styleable.GaugeView_textUnitColor, TEXT_UNIT_COLOR);
-			mTextShadowColor = a.getColor(R.styleable.GaugeView_textShadowColor, TEXT_SHADOW_COLOR);
-
-			mTextValueSize = a.getFloat(R.styleable.GaugeView_textValueSize, TEXT_VALUE_SIZE);
-			mTextUnitSize = a.getFloat(R.styleable.GaugeView_textUnitSize, TEXT_UNIT_SIZE);
-		}
-
-		a.recycle();
-	}
-
-    private void readRanges(final CharSequence[] rangeValues, final CharSequence[] rangeColors) {
-
-        int rangeValuesLength;
-        if (rangeValues == null) {
-            rangeValuesLength = RANGE_VALUES.length;
-        } else {
-            rangeValuesLength = rangeValues.length;
-        }
-
-        int rangeColorsLength;
-        if (rangeColors == null) {
-            rangeColorsLength = RANGE_COLORS.length;
-        } else {
-            rangeColorsLength = rangeColors.length;
-        }
-
-        if (rangeValuesLength != rangeColorsLength) {
-            throw new IllegalArgumentException(
-                    "The ranges and colors arrays must have the same length.");
-        }
-
-        final int length = rangeValuesLength;
-        if (rangeValues != null) {
-			mRangeValues = new float[length];
-            for (int i = 0; i < length; i++) {
-                mRangeValues[i] = Float.parseFloat(rangeValues[i].toString());
-            }
-        } else {
-            mRangeValues = RANGE_VALUES;
-        }
-
-        if (rangeColors != null) {
-			mRangeColors = new int[length];
-			for (int i = 0; i < length; i++) {
-                mRangeColors[i] = Color.parseColor(rangeColors[i].toString());
+	/**
+	 * Creates a gauge of a style compiled beforehand, which any number of gauges can share.
+	 */
+	public GaugeView(final Context context, final GaugeStyle style) {
+		super(context);
+		mRenderer = new GaugeRenderer(style);
+		mNeedleAnimator = new NeedleAnimator(HandlerFrameClock.create(), mNeedleListener);
+		setAsyncBackground(!isInEditMode());
+	}
+
+	private final NeedleAnimator.Listener mNeedleListener = new NeedleAnimator.Listener() {
+		@Override
+		public void onNeedleMoved(final int needle, final float value) {
+			if (0 != needle) {
+				final float previousValue = mNeedleValues[needle - 1];
+				mNeedleValues[needle - 1] = value;
+				invalidateNeedle(mNeedles[needle - 1], previousValue, value);
+				return;
+			}
+			final float previousValue = mCurrentValue;
+			mCurrentValue = value;
+			invalidateNeedle(previousValue, value);
+			if (null != mMetrics && 0 != mSettleStartTime && !mNeedleAnimator.isRunning()) {
+				mMetrics.onNeedleSettled(System.nanoTime() - mSettleStartTime);
+				mSettleStartTime = 0;
+			}
+			if (null != mQualityGovernor && !mNeedleAnimator.isRunning()) {
+				restoreQuality();
 			}
-        } else {
-			mRangeColors = RANGE_COLORS;
 		}
-	}
+	};
 
-	@TargetApi(11)
-	private void init() {
-		// TODO Why isn't this working with HA layer?
-		// The needle is not displayed although the onDraw() is being triggered by invalidate()
-		// calls.
-		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
-			setLayerType(View.LAYER_TYPE_SOFTWARE, null);
+	private final GaugeRenderer.BackgroundListener mBackgroundListener = new GaugeRenderer.BackgroundListener() {
+		@Override
+		public void onBackgroundReady(final GaugeRenderer renderer) {
+			recordBackgroundRebuild();
+			invalidate();
 		}
-
-		initDrawingRects();
-		initDrawingTools();
-
-		// Compute the scale properties
-		if (mShowRanges) {
-			initScale();
+	};
+
+	/**
+	 * Renders a background nobody rendered yet on a worker thread instead of in onSizeChanged(),
+	 * see {@link GaugeRenderer#setAsyncBackground}. Enabled by default.
+	 */
+	public void setAsyncBackground(final boolean async) {
+		mRenderer.setAsyncBackground(async ? mBackgroundListener : null);
+	}
+
+	/**
+	 * Feeds a sample from any thread, without blocking. Samples are collected in a ring buffer and
+	 * reduced to a single target value once per frame, see {@link #setSamplePolicy}. Only one
+	 * thread at a time may offer samples.
+	 *
+	 * @return false if the buffer was full and the sample was dropped
+	 */
+	public boolean offerSample(final float value) {
+		return offerSample(value, System.nanoTime());
+	}
+
+	/**
+	 * @param timeNanos when the sample was taken, on the {@link System#nanoTime()} time base
+	 * @see #offerSample(float)
+	 */
+	@TargetApi(16)
+	public boolean offerSample(final float value, final long timeNanos) {
+		final GaugeMetrics metrics = mMetrics;
+		if (null != metrics) {
+			metrics.onUpdateReceived();
+		}
+		final boolean accepted = mSampleBuffer.offer(value, timeNanos);
+		if (mSamplesDrainScheduled.compareAndSet(false, true)) {
+			postDrainSamples();
 		}
+		return accepted;
 	}
 
-	public void initDrawingRects() {
-		// The drawing area is a rectangle of width 1 and height 1,
-		// where (0,0) is the top left corner of the canvas.
-		// Note that on Canvas X axis points to right, while the Y axis points downwards.
-		mOuterShadowRect = new RectF(LEFT, TOP, RIGHT, BOTTOM);
-
-		mOuterBorderRect = new RectF(mOuterShadowRect.left + mOuterShadowWidth, mOuterShadowRect.top + mOuterShadowWidth,
-				mOuterShadowRect.right - mOuterShadowWidth, mOuterShadowRect.bottom - mOuterShadowWidth);
-
-		mOuterRimRect = new RectF(mOuterBorderRect.left + mOuterBorderWidth, mOuterBorderRect.top + mOuterBorderWidth,
-				mOuterBorderRect.right - mOuterBorderWidth, mOuterBorderRect.bottom - mOuterBorderWidth);
-
-		mInnerRimRect = new RectF(mOuterRimRect.left + mOuterRimWidth, mOuterRimRect.top + mOuterRimWidth, mOuterRimRect.right
-				- mOuterRimWidth, mOuterRimRect.bottom - mOuterRimWidth);
-
-		mInnerRimBorderRect = new RectF(mInnerRimRect.left + mInnerRimBorderWidth, mInnerRimRect.top + mInnerRimBorderWidth,
-				mInnerRimRect.right - mInnerRimBorderWidth, mInnerRimRect.bottom - mInnerRimBorderWidth);
-
-		mFaceRect = new RectF(mInnerRimRect.left + mInnerRimWidth, mInnerRimRect.top + mInnerRimWidth,
-				mInnerRimRect.right - mInnerRimWidth, mInnerRimRect.bottom - mInnerRimWidth);
-
-		mScaleRect = new RectF(mFaceRect.left + mScalePosition, mFaceRect.top + mScalePosition, mFaceRect.right - mScalePosition,
-				mFaceRect.bottom - mScalePosition);
+	@TargetApi(16)
+	private void postDrainSamples() {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+			postOnAnimation(mDrainSamples);
+		} else {
+			post(mDrainSamples);
+		}
 	}
 
-	private void initDrawingTools() {
-		mBackgroundPaint = new Paint();
-		mBackgroundPaint.setFilterBitmap(true);
-
-		if (mShowOuterShadow) {
-			mOuterShadowPaint = getDefaultOuterShadowPaint();
-		}
-		if (mShowOuterBorder) {
-			mOuterBorderPaint = getDefaultOuterBorderPaint();
-		}
-		if (mShowOuterRim) {
-			mOuterRimPaint = getDefaultOuterRimPaint();
+	private final Runnable mDrainSamples = new Runnable() {
+		@Override
+		public void run() {
+			// Cleared first, so samples offered while draining schedule the next frame
+			mSamplesDrainScheduled.set(false);
+			if (mSampleBuffer.drain(mSampleReducer) > 0) {
+				mLastFrameMinSample = mSampleReducer.getMin();
+				mLastFrameMaxSample = mSampleReducer.getMax();
+				applyTargetValue(mSampleReducer.reduce(mTargetValue));
+			}
 		}
-		if (mShowInnerRim) {
-			mInnerRimPaint = getDefaultInnerRimPaint();
-			mInnerRimBorderLightPaint = getDefaultInnerRimBorderLightPaint();
-			mInnerRimBorderDarkPaint = getDefaultInnerRimBorderDarkPaint();
+	};
+
+	/**
+	 * Thread-safe alternative to {@link #setTargetValue(float)}. Only the latest value is kept and
+	 * applied on the next frame; however many updates arrive in between, at most one invalidation
+	 * is scheduled per frame.
+	 */
+	@TargetApi(16)
+	public void postTargetValue(final float value) {
+		final GaugeMetrics metrics = mMetrics;
+		if (null != metrics) {
+			metrics.onUpdateReceived();
 		}
-		if (mShowRanges) {
-			setDefaultScaleRangePaints();
+		mPendingTargetValue.set(Float.floatToIntBits(value));
+		if (!mPendingTargetValueSet.compareAndSet(false, true)) {
+			mCoalescedUpdates.incrementAndGet();
+			return;
 		}
-		if (mShowNeedle) {
-			setDefaultNeedlePaths();
-			mNeedleLeftPaint = getDefaultNeedleLeftPaint();
-			mNeedleRightPaint = getDefaultNeedleRightPaint();
-			mNeedleScrewPaint = getDefaultNeedleScrewPaint();
-			mNeedleScrewBorderPaint = getDefaultNeedleScrewBorderPaint();
+		// The value is picked up in onDraw()
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+			postInvalidateOnAnimation();
+		} else {
+			postInvalidate();
 		}
-		if (mShowText) {
-			mTextValuePaint = getDefaultTextValuePaint();
-			mTextUnitPaint = getDefaultTextUnitPaint();
+	}
+
+	private void applyPendingTargetValue() {
+		if (mPendingTargetValueSet.getAndSet(false)) {
+			applyTargetValue(Float.intBitsToFloat(mPendingTargetValue.get()));
 		}
+	}
+
+	/**
+	 * @return how many {@link #postTargetValue} calls were superseded by a later one before being
+	 *         drawn
+	 */
+	public long getCoalescedUpdateCount() {
+		return mCoalescedUpdates.get();
+	}
+
+	public void setSamplePolicy(final SampleReducer.Policy policy) {
+		mSampleReducer.setPolicy(policy);
+	}
+
+	public SampleReducer.Policy getSamplePolicy() {
+		return mSampleReducer.getPolicy();
+	}
+
+	/**
+	 * @param millis how long {@link SampleReducer.Policy#PEAK_HOLD} holds a peak
+	 */
+	public void setPeakHoldTime(final long millis) {
+		mSampleReducer.setPeakHoldNanos(millis * 1000000L);
+	}
 
-		mFacePaint = getDefaultFacePaint();
-		mFaceBorderPaint = getDefaultFaceBorderPaint();
-		mFaceShadowPaint = getDefaultFaceShadowPaint();
+	/**
+	 * @return the smallest and largest sample of the last frame that received any, NaN if none has
+	 *         since the gauge was created or bound
+	 */
+	public float getLastFrameMinSample() {
+		return mLastFrameMinSample;
 	}
 
-	public Paint getDefaultOuterShadowPaint() {
-		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-		paint.setStyle(Paint.Style.FILL);
-		paint.setShader(new RadialGradient(CENTER, CENTER, mOuterShadowRect.width() / 2.0f, OUTER_SHADOW_COLORS, OUTER_SHADOW_POS,
-				TileMode.MIRROR));
-		return paint;
+	public float getLastFrameMaxSample() {
+		return mLastFrameMaxSample;
 	}
 
-	private Paint getDefaultOuterBorderPaint() {
-		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-		paint.setStyle(Paint.Style.FILL);
-		paint.setColor(Color.argb(245, 0, 0, 0));
-		return paint;
+	public long getDroppedSampleCount() {
+		return mSampleBuffer.getDroppedCount();
 	}
 
-	public Paint getDefaultOuterRimPaint() {
-		// Use a linear gradient to create the 3D effect
-		final LinearGradient verticalGradient = new LinearGradient(mOuterRimRect.left, mOuterRimRect.top, mOuterRimRect.left,
-				mOuterRimRect.bottom, Color.rgb(255, 255, 255), Color.rgb(84, 90, 100), TileMode.REPEAT);
+	/**
+	 * Replaces the source of animation frames, e.g. with a manually driven clock.
+	 */
+	public void setFrameClock(final FrameClock clock) {
+		mNeedleAnimator.setFrameClock(clock);
+	}
 
-		// Use a Bitmap shader for the metallic style
-		final Bitmap bitmap = BitmapFactory.decodeResource(getResources(), R.drawable.light_alu);
-		final BitmapShader aluminiumTile = new BitmapShader(bitmap, TileMode.REPEAT, TileMode.REPEAT);
-		final Matrix matrix = new Matrix();
-		matrix.setScale(1.0f / bitmap.getWidth(), 1.0f / bitmap.getHeight());
-		aluminiumTile.setLocalMatrix(matrix);
+	/**
+	 * Changes how the needle moves, {@link NeedlePhysics#DEFAULT_MOTION} by default. A motion under
+	 * way continues from where it is.
+	 */
+	public void setNeedleMotion(final NeedleMotion motion) {
+		for (int i = 0; i < mNeedleAnimator.getNeedleCount(); i++) {
+			mNeedleAnimator.getPhysics(i).setMotion(motion);
+		}
+	}
 
-		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-		paint.setShader(new ComposeShader(verticalGradient, aluminiumTile, PorterDuff.Mode.MULTIPLY));
-		paint.setFilterBitmap(true);
-		return paint;
+	/**
+	 * Adds a needle on the same scale, e.g. for a setpoint next to the measured value. It is
+	 * animated on its own, by the same frame callback as the main needle, and drawn under it in the
+	 * same pass over the shared background. The needles are set up by the code owning the gauge, so
+	 * only the main one is saved with the instance state.
+	 *
+	 * @param value where the needle starts, at rest
+	 * @return the index of the needle for {@link #setTargetValue(int, float)}, from 1
+	 */
+	public int addNeedle(final GaugeNeedle needle, final float value) {
+		final int count = mNeedles.length;
+		final GaugeNeedle[] needles = new GaugeNeedle[count + 1];
+		System.arraycopy(mNeedles, 0, needles, 0, count);
+		needles[count] = needle;
+		mNeedles = needles;
+		final float clampedValue = mRenderer.clampValue(value);
+		mNeedleValues = Arrays.copyOf(mNeedleValues, count + 1);
+		mNeedleValues[count] = clampedValue;
+		mNeedleAnimator.setNeedleCount(count + 2, clampedValue);
+		invalidate();
+		return count + 1;
 	}
 
-	private Paint getDefaultInnerRimPaint() {
-		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-		paint.setShader(new LinearGradient(mInnerRimRect.left, mInnerRimRect.top, mInnerRimRect.left, mInnerRimRect.bottom, new int[]{
-				Color.argb(255, 68, 73, 80), Color.argb(255, 91, 97, 105), Color.argb(255, 178, 180, 183), Color.argb(255, 188, 188, 190),
-				Color.argb(255, 84, 90, 100), Color.argb(255, 137, 137, 137)}, new float[]{0, 0.1f, 0.2f, 0.4f, 0.8f, 1},
-				TileMode.CLAMP));
-		return paint;
+	/**
+	 * Removes all the needles added by {@link #addNeedle}.
+	 */
+	public void removeNeedles() {
+		mNeedles = new GaugeNeedle[0];
+		mNeedleValues = new float[0];
+		mNeedleAnimator.setNeedleCount(1, 0);
+		invalidate();
 	}
 
-	private Paint getDefaultInnerRimBorderLightPaint() {
-		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-		paint.setStyle(Paint.Style.STROKE);
-		paint.setColor(Color.argb(100, 255, 255, 255));
-		paint.setStrokeWidth(0.005f);
-		return paint;
+	/**
+	 * @return the number of needles, including the main one
+	 */
+	public int getNeedleCount() {
+		return mNeedles.length + 1;
 	}
 
-	private Paint getDefaultInnerRimBorderDarkPaint() {
-		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-		paint.setStyle(Paint.Style.STROKE);
-		paint.setColor(Color.argb(100, 81, 84, 89));
-		paint.setStrokeWidth(0.005f);
-		return paint;
+	/**
+	 * Moves a needle to the value.
+	 *
+	 * @param needle 0 for the main needle, same as {@link #setTargetValue(float)}, or an index
+	 *            returned by {@link #addNeedle}
+	 */
+	public void setTargetValue(final int needle, final float value) {
+		if (0 == needle) {
+			setTargetValue(value);
+			return;
+		}
+		final float target = mRenderer.clampValue(value);
+		if (mSuspended) {
+			// Picked up when the gauge is shown again
+			mNeedleAnimator.getPhysics(needle).setTarget(target);
+		} else {
+			mNeedleAnimator.setTarget(needle, target);
+		}
 	}
 
-	public Paint getDefaultFacePaint() {
-		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-		paint.setShader(new RadialGradient(0.5f, 0.5f, mFaceRect.width() / 2, new int[]{Color.rgb(50, 132, 206), Color.rgb(36, 89, 162),
-				Color.rgb(27, 59, 131)}, new float[]{0.5f, 0.96f, 0.99f}, TileMode.MIRROR));
-		return paint;
-	}
-
-	public Paint getDefaultFaceBorderPaint() {
-		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-		paint.setStyle(Paint.Style.STROKE);
-		paint.setColor(Color.argb(100, 81, 84, 89));
-		paint.setStrokeWidth(0.005f);
-		return paint;
-	}
-
-	public Paint getDefaultFaceShadowPaint() {
-		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-		paint.setShader(new RadialGradient(0.5f, 0.5f, mFaceRect.width() / 2.0f, new int[]{Color.argb(60, 40, 96, 170),
-				Color.argb(80, 15, 34, 98), Color.argb(120, 0, 0, 0), Color.argb(140, 0, 0, 0)},
-				new float[]{0.60f, 0.85f, 0.96f, 0.99f}, TileMode.MIRROR));
-		return paint;
-	}
-
-	public void setDefaultNeedlePaths() {
-		final float x = 0.5f, y = 0.5f;
-		mNeedleLeftPath = new Path();
-		mNeedleLeftPath.moveTo(x, y);
-		mNeedleLeftPath.lineTo(x - mNeedleWidth, y);
-		mNeedleLeftPath.lineTo(x, y - mNeedleHeight);
-		mNeedleLeftPath.lineTo(x, y);
-		mNeedleLeftPath.lineTo(x - mNeedleWidth, y);
+	/**
+	 * @return the value the needle currently points at
+	 */
+	public float getValue(final int needle) {
+		return 0 == needle ? mCurrentValue : mNeedleValues[needle - 1];
+	}
 
-		mNeedleRightPath = new Path();
-		mNeedleRightPath.moveTo(x, y);
-		mNeedleRightPath.lineTo(x + mNeedleWidth, y);
-		mNeedleRightPath.lineTo(x, y - mNeedleHeight);
-		mNeedleRightPath.lineTo(x, y);
-		mNeedleRightPath.lineTo(x + mNeedleWidth, y);
-	}
-
-	public Paint getDefaultNeedleLeftPaint() {
-		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-		paint.setColor(Color.rgb(176, 10, 19));
-		return paint;
-	}
-
-	public Paint getDefaultNeedleRightPaint() {
-		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-		paint.setColor(Color.rgb(252, 18, 30));
-		paint.setShadowLayer(0.01f, 0.005f, -0.005f, Color.argb(127, 0, 0, 0));
-		return paint;
-	}
-
-	public Paint getDefaultNeedleScrewPaint() {
-		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-		paint.setShader(new RadialGradient(0.5f, 0.5f, 0.07f, new int[]{Color.rgb(171, 171, 171), Color.WHITE}, new float[]{0.05f,
-				0.9f}, TileMode.MIRROR));
-		return paint;
-	}
-
-	public Paint getDefaultNeedleScrewBorderPaint() {
-		final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-		paint.setStyle(Paint.Style.STROKE);
-		paint.setColor(Color.argb(100, 81, 84, 89));
-		paint.setStrokeWidth(0.005f);
-		return paint;
-	}
-
-	public void setDefaultScaleRangePaints() {
-		final int length = mRangeValues.length;
-		mRangePaints = new Paint[length];
-		for (int i = 0; i < length; i++) {
-			mRangePaints[i] = new Paint(Paint.LINEAR_TEXT_FLAG | Paint.ANTI_ALIAS_FLAG);
-			mRangePaints[i].setColor(mRangeColors[i]);
-			mRangePaints[i].setStyle(Paint.Style.STROKE);
-			mRangePaints[i].setStrokeWidth(0.005f);
-			mRangePaints[i].setTextSize(0.05f);
-			mRangePaints[i].setTypeface(Typeface.SANS_SERIF);
-			mRangePaints[i].setTextAlign(Align.CENTER);
-			mRangePaints[i].setShadowLayer(0.005f, 0.002f, 0.002f, mTextShadowColor);
-		}
-	}
-
-	public Paint getDefaultTextValuePaint() {
-		final Paint paint = new Paint(Paint.LINEAR_TEXT_FLAG | Paint.ANTI_ALIAS_FLAG);
-		paint.setColor(mTextValueColor);
-		paint.setStyle(Paint.Style.FILL_AND_STROKE);
-		paint.setStrokeWidth(0.005f);
-		paint.setTextSize(mTextValueSize);
-		paint.setTextAlign(Align.CENTER);
-		paint.setTypeface(Typeface.SANS_SERIF);
-		paint.setShadowLayer(0.01f, 0.002f, 0.002f, mTextShadowColor);
-		return paint;
-	}
-
-	public Paint getDefaultTextUnitPaint() {
-		final Paint paint = new Paint(Paint.LINEAR_TEXT_FLAG | Paint.ANTI_ALIAS_FLAG);
-		paint.setColor(mTextUnitColor);
-		paint.setStyle(Paint.Style.FILL_AND_STROKE);
-		paint.setStrokeWidth(0.005f);
-		paint.setTextSize(mTextUnitSize);
-		paint.setTextAlign(Align.CENTER);
-		paint.setShadowLayer(0.01f, 0.002f, 0.002f, mTextShadowColor);
-		return paint;
+	public NeedleMotion getNeedleMotion() {
+		return mNeedleAnimator.getPhysics().getMotion();
 	}
 
 	@Override
@@ -528,18 +417,12 @@ public class GaugeView extends View {
 		super.onRestoreInstanceState(superState);
 
 		mNeedleInitialized = bundle.getBoolean("needleInitialized");
-		mNeedleVelocity = bundle.getFloat("needleVelocity");
-		mNeedleAcceleration = bundle.getFloat("needleAcceleration");
-		mNeedleLastMoved = bundle.getLong("needleLastMoved");
 		mCurrentValue = bundle.getFloat("currentValue");
 		mTargetValue = bundle.getFloat("targetValue");
-	}
-
-	private void initScale() {
-		mScaleRotation = (mScaleStartAngle + 180) % 360;
-		mDivisionValue = (mScaleEndValue - mScaleStartValue) / mDivisions;
-		mSubdivisionValue = mDivisionValue / mSubdivisions;
-        mSubdivisionAngle = (mScaleEndAngle - mScaleStartAngle) / (mDivisions * mSubdivisions);
+		mNeedleAnimator.getPhysics().setState(mCurrentValue, bundle.getFloat("needleVelocity"), mTargetValue);
+		if (!mSuspended) {
+			mNeedleAnimator.setTarget(mTargetValue);
+		}
 	}
 
 	@Override
@@ -549,14 +432,81 @@ public class GaugeView extends View {
 		final Bundle state = new Bundle();
 		state.putParcelable("superState", superState);
 		state.putBoolean("needleInitialized", mNeedleInitialized);
-		state.putFloat("needleVelocity", mNeedleVelocity);
-		state.putFloat("needleAcceleration", mNeedleAcceleration);
-		state.putLong("needleLastMoved", mNeedleLastMoved);
+		state.putFloat("needleVelocity", mNeedleAnimator.getPhysics().getVelocity());
 		state.putFloat("currentValue", mCurrentValue);
 		state.putFloat("targetValue", mTargetValue);
 		return state;
 	}
 
+	@Override
+	protected void onAttachedToWindow() {
+		super.onAttachedToWindow();
+		updateSuspended();
+		// Runnables posted while detached may never run, which would leave the flag set and
+		// samples never drained again. Draining twice is harmless.
+		if (mSamplesDrainScheduled.get()) {
+			postDrainSamples();
+		}
+		// Same for the invalidation picking up a posted value
+		if (mPendingTargetValueSet.get()) {
+			invalidate();
+		}
+	}
+
+	/**
+	 * Stops the needle and gives the background and needle sprites back to the shared cache and
+	 * pool, so a detached gauge, e.g. one scrolled out of a list, holds no bitmaps.
+	 */
+	@Override
+	protected void onDetachedFromWindow() {
+		super.onDetachedFromWindow();
+		setSuspended(true);
+		mRenderer.release();
+		mReleased = true;
+	}
+
+	@Override
+	protected void onWindowVisibilityChanged(final int visibility) {
+		super.onWindowVisibilityChanged(visibility);
+		updateSuspended();
+	}
+
+	@Override
+	protected void onVisibilityChanged(final View changedView, final int visibility) {
+		super.onVisibilityChanged(changedView, visibility);
+		updateSuspended();
+	}
+
+	private void updateSuspended() {
+		if (null == mNeedleAnimator) {
+			// onVisibilityChanged() is called from the View constructor, before ours has run
+			return;
+		}
+		setSuspended(!isShown() || VISIBLE != getWindowVisibility());
+	}
+
+	/**
+	 * While the gauge can't be seen the needle isn't animated, and once it can it is put straight
+	 * on the latest value: there is no point in showing a sweep that started while hidden.
+	 */
+	private void setSuspended(final boolean suspended) {
+		if (suspended == mSuspended) {
+			return;
+		}
+		mSuspended = suspended;
+		if (suspended) {
+			mNeedleAnimator.stop();
+			return;
+		}
+		if (mNeedleInitialized) {
+			mSettleStartTime = 0;
+			mNeedleAnimator.snapTo(mTargetValue);
+		}
+		for (int i = 1; i < mNeedleAnimator.getNeedleCount(); i++) {
+			mNeedleAnimator.snapTo(i, mNeedleAnimator.getPhysics(i).getTarget());
+		}
+	}
+
 	@Override
 	protected void onMeasure(final int widthMeasureSpec, final int heightMeasureSpec) {
 		// Loggable.log.debug(String.format("widthMeasureSpec=%s, heightMeasureSpec=%s",
@@ -590,137 +540,289 @@ public class GaugeView extends View {
 
 	@Override
 	protected void onSizeChanged(final int w, final int h, final int oldw, final int oldh) {
-			drawGauge();
+		setRendererSize(w, h);
 	}
 
-	private void drawGauge() {
-		if (null != mBackground) {
-			// Let go of the old background
-			mBackground.recycle();
+	private void setRendererSize(final int w, final int h) {
+		mReleased = false;
+		if (null != mTrace) {
+			GaugeTrace.beginSection(mTrace.rebuild);
 		}
-		// Create a new background according to the new width and height
-		mBackground = Bitmap.createBitmap(getWidth(), getHeight(), Bitmap.Config.ARGB_8888);
-		final Canvas canvas = new Canvas(mBackground);
-		final float scale = Math.min(getWidth(), getHeight());
-		canvas.scale(scale, scale);
-		canvas.translate((scale == getHeight()) ? ((getWidth()-scale) /2)/scale : 0 
-				,(scale == getWidth()) ? ((getHeight()-scale) /2 )/scale: 0);
-
-		drawRim(canvas);
-		drawFace(canvas);
-
-		if (mShowRanges) {
-			drawScale(canvas);
+		mRenderer.setSize(w, h);
+		if (null != mTrace) {
+			GaugeTrace.endSection();
 		}
+		recordBackgroundRebuild();
 	}
 
 	@Override
 	protected void onDraw(final Canvas canvas) {
-		drawBackground(canvas);
-
-		final float scale = Math.min(getWidth(), getHeight());
-		canvas.scale(scale, scale);
-		canvas.translate((scale == getHeight()) ? ((getWidth() - scale) / 2) / scale : 0
-				, (scale == getWidth()) ? ((getHeight() - scale) / 2) / scale : 0);
-		
-		if (mShowNeedle) {
-			drawNeedle(canvas);
+		if (mReleased) {
+			setRendererSize(getWidth(), getHeight());
 		}
-
-		if (mShowText) {
-			drawText(canvas);
+		applyPendingTargetValue();
+		if (null != mQualityGovernor) {
+			governQuality();
+		}
+		if (null != mMetrics || null != mTrace) {
+			drawInstrumented(canvas);
+			return;
+		}
+		mRenderer.drawBackground(canvas);
+		if (null != mHistory) {
+			drawHistory(canvas);
 		}
+		drawNeedles(canvas);
+		mRenderer.drawText(canvas, mCurrentValue);
+	}
 
-		computeCurrentValue();
+	private void drawNeedles(final Canvas canvas) {
+		for (int i = 0; i < mNeedles.length; i++) {
+			mRenderer.drawNeedle(canvas, mNeedles[i], mNeedleValues[i]);
+		}
+		if (mNeedleInitialized) {
+			mRenderer.drawNeedle(canvas, mCurrentValue);
+		}
 	}
 
-	private void drawBackground(final Canvas canvas) {
-        if (null != mBackground) {
-				canvas.drawBitmap(mBackground, 0, 0, mBackgroundPaint);
+	/**
+	 * Same as onDraw(), timing every part and wrapping it in trace sections.
+	 */
+	private void drawInstrumented(final Canvas canvas) {
+		final GaugeMetrics metrics = mMetrics;
+		final GaugeTrace trace = mTrace;
+		if (null != trace) {
+			GaugeTrace.beginSection(trace.draw);
+			GaugeTrace.beginSection(trace.background);
+		}
+		final long start = System.nanoTime();
+		mRenderer.drawBackground(canvas);
+		final long backgroundEnd = System.nanoTime();
+		if (null != trace) {
+			GaugeTrace.endSection();
+			GaugeTrace.beginSection(trace.needle);
+		}
+		if (null != mHistory) {
+			drawHistory(canvas);
+		}
+		drawNeedles(canvas);
+		final long needleEnd = System.nanoTime();
+		if (null != trace) {
+			GaugeTrace.endSection();
+			GaugeTrace.beginSection(trace.text);
+		}
+		mRenderer.drawText(canvas, mCurrentValue);
+		final long textEnd = System.nanoTime();
+		if (null != trace) {
+			GaugeTrace.endSection();
+			GaugeTrace.endSection();
+			GaugeTrace.setCounter(trace.valueCounter, (long) mCurrentValue);
+		}
+
+		if (null != metrics) {
+			metrics.onFrameDrawn(backgroundEnd - start, needleEnd - backgroundEnd, textEnd - needleEnd);
+			if (mNeedleInitialized && !mTargetValueRendered) {
+				mTargetValueRendered = true;
+				metrics.onUpdateRendered();
+			}
+			if (null != trace) {
+				GaugeTrace.setCounter(trace.framesCounter, metrics.getFramesDrawn());
+			}
+			if (null != mMetricsListener) {
+				mMetricsListener.onFrameDrawn(this, metrics);
 			}
+		}
 	}
 
-	private void drawRim(final Canvas canvas) {
-		if (mShowOuterShadow) {
-			canvas.drawOval(mOuterShadowRect, mOuterShadowPaint);
+	private void drawHistory(final Canvas canvas) {
+		final long now = System.nanoTime();
+		mHistory.removeBefore(now - mHistoryWindowNanos);
+		mRenderer.drawHistory(canvas, mHistory, mHistoryMode, now, mHistoryWindowNanos);
+		if (mHistory.size() > 0 && !mHistoryRefreshPosted) {
+			// Keeps the band fading, and the values leaving it, while the needle rests
+			mHistoryRefreshPosted = true;
+			postDelayed(mRefreshHistory, Math.max(1, mHistoryWindowNanos / 1000000L / (2 * GaugeRenderer.HISTORY_FADE_STEPS)));
 		}
-		if (mShowOuterBorder) {
-			canvas.drawOval(mOuterBorderRect, mOuterBorderPaint);
+	}
+
+	private final Runnable mRefreshHistory = new Runnable() {
+		@Override
+		public void run() {
+			mHistoryRefreshPosted = false;
+			invalidate();
 		}
-		if (mShowOuterRim) {
-			canvas.drawOval(mOuterRimRect, mOuterRimPaint);
+	};
+
+	/**
+	 * Shows the values of the last {@code windowMillis} around the scale, as {@link #HISTORY_BAND}
+	 * or {@link #HISTORY_GHOSTS}, or nothing with {@link #HISTORY_NONE}, the default. Up to
+	 * {@link #HISTORY_CAPACITY} target values are kept, so with more updates than that in the window
+	 * only the latest ones are shown. Drawing it takes the same time however long the gauge runs.
+	 */
+	public void setHistory(final int mode, final long windowMillis) {
+		mHistoryMode = mode;
+		mHistoryWindowNanos = windowMillis * 1000000L;
+		if (HISTORY_NONE == mode) {
+			mHistory = null;
+		} else if (null == mHistory) {
+			mHistory = new ValueHistory(HISTORY_CAPACITY);
 		}
-		if (mShowInnerRim) {
-			canvas.drawOval(mInnerRimRect, mInnerRimPaint);
-			canvas.drawOval(mInnerRimRect, mInnerRimBorderLightPaint);
-			canvas.drawOval(mInnerRimBorderRect, mInnerRimBorderDarkPaint);
+		invalidate();
+	}
+
+	public int getHistoryMode() {
+		return mHistoryMode;
+	}
+
+	public void clearHistory() {
+		if (null != mHistory) {
+			mHistory.clear();
+			invalidate();
 		}
 	}
 
-	private void drawFace(final Canvas canvas) {
-		// Draw the face gradient
-		canvas.drawOval(mFaceRect, mFacePaint);
-		// Draw the face border
-		canvas.drawOval(mFaceRect, mFaceBorderPaint);
-		// Draw the inner face shadow
-		canvas.drawOval(mFaceRect, mFaceShadowPaint);
+	/**
+	 * Feeds the time since the previous frame to the governor while the needle moves.
+	 */
+	private void governQuality() {
+		if (!mNeedleAnimator.isRunning()) {
+			mLastFrameTime = 0;
+			return;
+		}
+		final long now = System.nanoTime();
+		if (0 != mLastFrameTime && mQualityGovernor.onFrame(now - mLastFrameTime)) {
+			mRenderer.setQuality(mQualityGovernor.getLevel());
+		}
+		mLastFrameTime = now;
 	}
 
-	private void drawText(final Canvas canvas) {
-		final String textValue = !TextUtils.isEmpty(mTextValue) ? mTextValue : valueString(mCurrentValue);
-		final float textValueWidth = mTextValuePaint.measureText(textValue);
-		final float textUnitWidth = !TextUtils.isEmpty(mTextUnit) ? mTextUnitPaint.measureText(mTextUnit) : 0;
+	private void restoreQuality() {
+		mLastFrameTime = 0;
+		if (mQualityGovernor.reset()) {
+			mRenderer.setQuality(QualityGovernor.QUALITY_FULL);
+			// Parts outside the needle sweep may have been drawn at the lower quality too
+			invalidate();
+		}
+	}
 
-		final float startX = CENTER - textUnitWidth / 2;
-		final float startY = CENTER + 0.1f;
+	/**
+	 * Lets the gauge lower the quality of the needle and the readout in stages while its frames
+	 * take longer than the budget, see {@link QualityGovernor}. Frames are timed between draws
+	 * while the needle moves, and full quality is restored once it settles. Disabled by default.
+	 */
+	public void setAdaptiveQuality(final boolean enabled) {
+		if (enabled && null == mQualityGovernor) {
+			mQualityGovernor = new QualityGovernor(mFrameBudgetNanos);
+		} else if (!enabled && null != mQualityGovernor) {
+			restoreQuality();
+			mQualityGovernor = null;
+		}
+	}
 
-		canvas.drawText(textValue, startX, startY, mTextValuePaint);
+	public boolean isAdaptiveQuality() {
+		return null != mQualityGovernor;
+	}
 
-		if (!TextUtils.isEmpty(mTextUnit)) {
-			canvas.drawText(mTextUnit, CENTER + textValueWidth / 2 + 0.03f, CENTER, mTextUnitPaint);
+	/**
+	 * @param frameBudgetNanos how long a frame may take before the quality is lowered, one refresh
+	 *            period by default
+	 */
+	public void setFrameBudgetNanos(final long frameBudgetNanos) {
+		mFrameBudgetNanos = frameBudgetNanos;
+		if (null != mQualityGovernor) {
+			mQualityGovernor.setFrameBudgetNanos(frameBudgetNanos);
 		}
 	}
 
-	private void drawScale(final Canvas canvas) {
-		canvas.save(Canvas.MATRIX_SAVE_FLAG);
-		// On canvas, North is 0 degrees, East is 90 degrees, South is 180 etc.
-		// We start the scale somewhere South-West so we need to first rotate the canvas.
-		canvas.rotate(mScaleRotation, 0.5f, 0.5f);
+	/**
+	 * @return the {@link QualityGovernor} level the gauge currently draws at
+	 */
+	public int getQualityLevel() {
+		return mRenderer.getQuality();
+	}
 
-		final int totalTicks = mDivisions * mSubdivisions + 1;
-		for (int i = 0; i < totalTicks; i++) {
-			final float y1 = mScaleRect.top;
-			final float y2 = y1 + 0.015f; // height of division
-			final float y3 = y1 + 0.045f; // height of subdivision
+	private void recordBackgroundRebuild() {
+		final long nanos = mRenderer.getLastBackgroundRenderNanos();
+		if (null != mMetrics && 0 != nanos) {
+			mMetrics.onBackgroundRebuilt(nanos);
+		}
+	}
 
-			final float value = getValueForTick(i);
-            //final Paint paint = getRangePaint(mScaleStartValue + value);
-			final Paint paint = getRangePaint(value);
+	/**
+	 * Starts or stops collecting {@link GaugeMetrics}. While disabled, which is the default,
+	 * nothing is timed or counted.
+	 */
+	public void setMetricsEnabled(final boolean enabled) {
+		if (enabled != (null != mMetrics)) {
+			mMetrics = enabled ? new GaugeMetrics() : null;
+			mSettleStartTime = 0;
+		}
+	}
 
-            float mod = value % mDivisionValue;
-            /*if ((Math.abs(mod - 0) < 0.001) || (Math.abs(mod - mDivisionValue) < 0.001)) {
-				// Draw a division tick
-				canvas.drawLine(0.5f, y1, 0.5f, y3, paint);
-				// Draw the text 0.15 away from the division tick
-				drawTextOnCanvasWithMagnifier(canvas, valueString(value), 0.5f, y3 + 0.045f, paint);
-			} else {
-				// Draw a subdivision tick
-				canvas.drawLine(0.5f, y1, 0.5f, y2, paint);
-			}*/
-			if ((Math.abs(mod - 0) < 0.001) || (Math.abs(mod - mDivisionValue) < 0.001)) {
-				// Draw a division tick
-				canvas.drawLine(0.5f, y1, 0.5f, y3, paint);
-				// Draw the text 0.15 away from the division tick
-				drawTextOnCanvasWithMagnifier(canvas, valueString(value), 0.5f, y3 + 0.045f, paint);
-			} else {
-				// Draw a subdivision tick
-				canvas.drawLine(0.5f, y1, 0.5f, y2, paint);
-			}
+	public boolean isMetricsEnabled() {
+		return null != mMetrics;
+	}
 
+	/**
+	 * @return a snapshot of the metrics collected so far, or null if they aren't enabled
+	 */
+	public GaugeMetrics getMetrics() {
+		final GaugeMetrics metrics = mMetrics;
+		return null != metrics ? new GaugeMetrics(metrics) : null;
+	}
 
-			canvas.rotate(mSubdivisionAngle, 0.5f, 0.5f);
+	public void resetMetrics() {
+		if (null != mMetrics) {
+			mMetrics = new GaugeMetrics();
+			mSettleStartTime = 0;
 		}
-		canvas.restore();
+	}
+
+	/**
+	 * @param listener called after every frame while metrics are enabled
+	 */
+	public void setMetricsListener(final GaugeMetrics.Listener listener) {
+		mMetricsListener = listener;
+	}
+
+	/**
+	 * Emits systrace sections for the drawing stages and background rebuilds, and counters for
+	 * the frames drawn and the value, all named after the label. Tracing requires API 18, and API
+	 * 29 for the counters.
+	 *
+	 * @param label identifies this gauge in the trace, or null to stop tracing
+	 */
+	public void setTraceLabel(final String label) {
+		mTrace = null != label ? new GaugeTrace(label) : null;
+	}
+
+	/**
+	 * @return the renderer drawing this gauge
+	 */
+	public GaugeRenderer getRenderer() {
+		return mRenderer;
+	}
+
+	/**
+	 * Selects how the background is kept: one of {@link #BACKGROUND_FORMAT_ARGB_8888},
+	 * {@link #BACKGROUND_FORMAT_RGB_565} (half the memory, but without alpha: the corners around
+	 * the round dial and its outer shadow come out black, so only use it on a black background),
+	 * {@link #BACKGROUND_FORMAT_HARDWARE} (API 26+; software canvases, e.g. screenshots, draw a
+	 * software copy made when first needed) or
+	 * {@link #BACKGROUND_FORMAT_PICTURE}. The last records the drawing commands once per style and
+	 * replays them on every draw, so a gauge takes a few kilobytes instead of a bitmap of its size,
+	 * and it stays sharp when scaled. Replaying costs more per frame than drawing a bitmap. Before
+	 * API 28, where the hardware renderer drops the shadows of the scale, it falls back to
+	 * {@link #BACKGROUND_FORMAT_ARGB_8888}.
+	 */
+	public void setBackgroundFormat(final int backgroundFormat) {
+		mRenderer.setBackgroundFormat(backgroundFormat);
+		recordBackgroundRebuild();
+		invalidate();
+	}
+
+	public int getBackgroundFormat() {
+		return mRenderer.getBackgroundFormat();
 	}
 
 	// Workaround to fix missing text on Lollipop and above,
@@ -751,111 +853,146 @@ public class GaugeView extends View {
 		}
 	}
 
-	private String valueString(final float value) {
-		return String.format("%d", (int) value);
+	/**
+	 * Changes how the value readout is formatted.
+	 *
+	 * @param decimals number of decimals, from 0 (truncated to an integer) to {@link ValueFormatter#MAX_DECIMALS}
+	 * @param showSign whether positive values get a '+' sign
+	 * @param locale provides the decimal separator
+	 */
+	public void setValueFormat(final int decimals, final boolean showSign, final Locale locale) {
+		mRenderer.setValueFormat(decimals, showSign, locale);
+		invalidate();
 	}
 
-	private float getValueForTick(final int tick) {
-		return mScaleStartValue + tick * (mDivisionValue / mSubdivisions);
+	/**
+	 * @return the ranges of the scale, or null if it doesn't show any
+	 */
+	public RangeIndex getRangeIndex() {
+		return mRenderer.getRangeIndex();
 	}
 
-	private Paint getRangePaint(final float value) {
-		final int length = mRangeValues.length;
-		for (int i = 0; i < length - 1; i++) {
-			if (value < mRangeValues[i]) return mRangePaints[i];
-		}
-		if (value <= mRangeValues[length - 1]) return mRangePaints[length - 1];
-		throw new IllegalArgumentException("Value " + value + " out of range!");
+	/**
+	 * @return the range the needle currently points at, or -1 if the scale doesn't show ranges
+	 */
+	public int getCurrentRange() {
+		final RangeIndex ranges = mRenderer.getRangeIndex();
+		return null != ranges ? ranges.indexOf(mCurrentValue) : -1;
 	}
 
-	private void drawNeedle(final Canvas canvas) {
-		if (mNeedleInitialized) {
-			final float angle = getAngleForValue(mCurrentValue);
-			// Logger.log.info(String.format("value=%f -> angle=%f", mCurrentValue, angle));
-
-			canvas.save(Canvas.MATRIX_SAVE_FLAG);
-			canvas.rotate(angle, 0.5f, 0.5f);
-
-			setNeedleShadowPosition(angle);
-			canvas.drawPath(mNeedleLeftPath, mNeedleLeftPaint);
-			canvas.drawPath(mNeedleRightPath, mNeedleRightPaint);
+	/**
+	 * @return the color of the range the needle currently points at, or 0 if the scale doesn't
+	 *         show ranges
+	 */
+	public int getCurrentRangeColor() {
+		final RangeIndex ranges = mRenderer.getRangeIndex();
+		return null != ranges ? ranges.getColorForValue(mCurrentValue) : 0;
+	}
 
-			canvas.restore();
+	/**
+	 * Selects how the needle is drawn: {@link #NEEDLE_RENDERER_PATH} rasterizes its paths and
+	 * shadow on every frame, {@link #NEEDLE_RENDERER_SPRITE} rasterizes them once per size and
+	 * then only blits bitmaps. With {@code spriteAngles} > 0 the sprite is pre-rendered at that
+	 * many angles and drawn without rotation, at the cost of one bitmap per angle.
+	 */
+	public void setNeedleRenderer(final int needleRenderer, final int spriteAngles) {
+		mRenderer.setNeedleRenderer(needleRenderer, spriteAngles);
+		invalidate();
+	}
 
-			// Draw the needle screw and its border
-			canvas.drawCircle(0.5f, 0.5f, 0.04f, mNeedleScrewPaint);
-			canvas.drawCircle(0.5f, 0.5f, 0.04f, mNeedleScrewBorderPaint);
-		}
+	public int getNeedleRenderer() {
+		return mRenderer.getNeedleRenderer();
 	}
 
-	private void setNeedleShadowPosition(final float angle) {
-		if (angle > 180 && angle < 360) {
-			// Move shadow from right to left
-			mNeedleRightPaint.setShadowLayer(0, 0, 0, Color.BLACK);
-			mNeedleLeftPaint.setShadowLayer(0.01f, -0.005f, 0.005f, Color.argb(127, 0, 0, 0));
-        } else {
-			// Move shadow from left to right
-			mNeedleLeftPaint.setShadowLayer(0, 0, 0, Color.BLACK);
-			mNeedleRightPaint.setShadowLayer(0.01f, 0.005f, -0.005f, Color.argb(127, 0, 0, 0));
+	/**
+	 * Invalidates what changes when the needle moves between the two values: the area it sweeps
+	 * and the value readout. Only software rendering and software layers repaint just that area;
+	 * from API 21 the hardware renderer ignores the rect and redraws the whole view, so there this
+	 * saves nothing over invalidate().
+	 */
+	private void invalidateNeedle(final float fromValue, final float toValue) {
+		// The history goes around the whole scale
+		if (null != mHistory || !mRenderer.getDirtyRect(fromValue, toValue, mNeedleInitialized, mDirtyRect)) {
+			invalidate();
+		} else if (!mDirtyRect.isEmpty()) {
+			invalidate(mDirtyRect);
 		}
 	}
 
-	private float getAngleForValue(final float value) {
-        return (mScaleRotation + ((value - mScaleStartValue) / mSubdivisionValue) * mSubdivisionAngle) % 360;
+	private void invalidateNeedle(final GaugeNeedle needle, final float fromValue, final float toValue) {
+		if (null != mHistory || !mRenderer.getDirtyRect(needle, fromValue, toValue, mDirtyRect)) {
+			invalidate();
+		} else if (!mDirtyRect.isEmpty()) {
+			invalidate(mDirtyRect);
+		}
 	}
 
-	private void computeCurrentValue() {
-		// Logger.log.warn(String.format("velocity=%f, acceleration=%f", mNeedleVelocity,
-		// mNeedleAcceleration));
-
-        if (!(Math.abs(mCurrentValue - mTargetValue) > 0.01f)) {
-            return;
-        }
-
-		if (-1 != mNeedleLastMoved) {
-			final float time = (System.currentTimeMillis() - mNeedleLastMoved) / 1000.0f;
-			final float direction = Math.signum(mNeedleVelocity);
-			if (Math.abs(mNeedleVelocity) < 90.0f) {
-				mNeedleAcceleration = 5.0f * (mTargetValue - mCurrentValue);
-            } else {
-				mNeedleAcceleration = 0.0f;
-			}
+	/**
+	 * Shows another item, e.g. when a RecyclerView row is rebound: switches to the style and puts
+	 * the needle straight on the value, dropping the animation, samples and posted values of the
+	 * previous item. The needles added with {@link #addNeedle} belong to the previous item too and
+	 * are removed. Only what differs from the current style is rebuilt, so rebinding between
+	 * styles this gauge has shown before allocates nothing.
+	 */
+	public void bind(final GaugeStyle style, final float value) {
+		mRenderer.setStyle(style);
+		mPendingTargetValueSet.set(false);
+		mSampleBuffer.drain(mSampleReducer);
+		mSampleReducer.reset();
+		mLastFrameMinSample = Float.NaN;
+		mLastFrameMaxSample = Float.NaN;
+		mSettleStartTime = 0;
+		mTargetValueRendered = false;
+		if (null != mQualityGovernor) {
+			restoreQuality();
+		}
 
-			mNeedleAcceleration = 5.0f * (mTargetValue - mCurrentValue);
-			mCurrentValue += mNeedleVelocity * time;
-			mNeedleVelocity += mNeedleAcceleration * time;
-
-			if ((mTargetValue - mCurrentValue) * direction < 0.01f * direction) {
-				mCurrentValue = mTargetValue;
-				mNeedleVelocity = 0.0f;
-				mNeedleAcceleration = 0.0f;
-				mNeedleLastMoved = -1L;
-            } else {
-				mNeedleLastMoved = System.currentTimeMillis();
-			}
+		mTargetValue = mRenderer.clampValue(value);
+		mNeedleInitialized = true;
+		if (null != mHistory) {
+			mHistory.clear();
+			mHistory.add(mTargetValue, System.nanoTime());
+		}
+		mNeedleAnimator.snapTo(mTargetValue);
+		if (0 != mNeedles.length) {
+			removeNeedles();
+		}
+		invalidate();
+	}
 
-			invalidate();
+	/**
+	 * Same as {@link #bind(GaugeStyle, float)} keeping the current style.
+	 */
+	public void bind(final float value) {
+		bind(mRenderer.getStyle(), value);
+	}
 
-        } else {
-			mNeedleLastMoved = System.currentTimeMillis();
-			computeCurrentValue();
+	public void setTargetValue(final float value) {
+		if (null != mMetrics) {
+			mMetrics.onUpdateReceived();
 		}
+		applyTargetValue(value);
 	}
 
-	public void setTargetValue(final float value) {
-		if (mShowScale || mShowRanges) {
-			if (value < mScaleStartValue) {
-				mTargetValue = mScaleStartValue;
-            } else if (value > mScaleEndValue) {
-				mTargetValue = mScaleEndValue;
-            } else {
-				mTargetValue = value;
+	private void applyTargetValue(final float value) {
+		mTargetValue = mRenderer.clampValue(value);
+		mNeedleInitialized = true;
+		if (null != mHistory) {
+			mHistory.add(mTargetValue, System.nanoTime());
+		}
+		if (mSuspended) {
+			// Picked up when the gauge is shown again
+			return;
+		}
+		mNeedleAnimator.setTarget(mTargetValue);
+		if (null != mMetrics) {
+			mTargetValueRendered = false;
+			if (mNeedleAnimator.isRunning() && 0 == mSettleStartTime) {
+				mSettleStartTime = System.nanoTime();
 			}
-        } else {
-			mTargetValue = value;
 		}
-		mNeedleInitialized = true;
-		invalidate();
+		// Shows the needle the first time, the animator repaints it from then on
+		invalidateNeedle(mCurrentValue, mCurrentValue);
 	}
 
 }
@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import android.os.Build;
+import android.os.Handler;
+
+/**
+ * {@link FrameClock} for platforms without a {@link android.view.Choreographer}, i.e. before API
+ * 16: frames are posted at a fixed rate to the {@link Handler} of the thread it was created on.
+ * They aren't aligned with vsync, which the needle physics don't depend on.
+ */
+public class HandlerFrameClock implements FrameClock {
+
+	private static final long FRAME_DELAY_MILLIS = 16;
+
+	private final Handler mHandler = new Handler();
+	private final Map<Callback, Runnable> mRunnables = new HashMap<Callback, Runnable>();
+
+	/**
+	 * @return a {@link ChoreographerFrameClock} where the platform has one, a handler clock
+	 *         otherwise
+	 */
+	public static FrameClock create() {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+			return new ChoreographerFrameClock();
+		}
+		return new HandlerFrameClock();
+	}
+
+	@Override
+	public long nanoTime() {
+		return System.nanoTime();
+	}
+
+	@Override
+	public void postFrameCallback(final Callback callback) {
+		mHandler.postDelayed(getRunnable(callback), FRAME_DELAY_MILLIS);
+	}
+
+	@Override
+	public void removeFrameCallback(final Callback callback) {
+		final Runnable runnable = mRunnables.get(callback);
+		if (null != runnable) {
+			mHandler.removeCallbacks(runnable);
+		}
+	}
+
+	private Runnable getRunnable(final Callback callback) {
+		Runnable runnable = mRunnables.get(callback);
+		if (null == runnable) {
+			runnable = new Runnable() {
+				@Override
+				public void run() {
+					callback.doFrame(System.nanoTime());
+				}
+			};
+			mRunnables.put(callback, runnable);
+		}
+		return runnable;
+	}
+}
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+/**
+ * Needle rasterized together with its shadow into bitmaps once per size, so drawing it is a
+ * single bitmap blit regardless of how complex the needle is.
+ * <p>
+ * With no angle steps there are two upright sprites (shadow on either side) which get rotated
+ * when drawn. With N angle steps the needle is pre-rendered at every 360/N degrees and the
+ * nearest sprite is blitted without any rotation.
+ */
+public class NeedleSprite {
+
+	public interface Renderer {
+		/**
+		 * Draws the needle at the given angle, rotated around (centerX, centerY).
+		 */
+		void drawNeedle(Canvas canvas, float angle, float centerX, float centerY, boolean shadowOnLeft);
+	}
+
+	private final int mAngleSteps;
+	private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+	private Bitmap[] mSprites;
+	private float mPivot;
+
+	public NeedleSprite(final int angleSteps) {
+		mAngleSteps = angleSteps;
+	}
+
+	public int getAngleSteps() {
+		return mAngleSteps;
+	}
+
+	public boolean isReady() {
+		return null != mSprites;
+	}
+
+	/**
+	 * (Re)renders the sprites.
+	 *
+	 * @param radius how far the needle and its shadow reach from the pivot, in pixels
+	 */
+	public void render(final float radius, final Renderer renderer) {
+		release();
+		final int size = (int) Math.ceil(2 * radius);
+		if (size <= 0) {
+			return;
+		}
+		mPivot = size / 2.0f;
+
+		final GaugeBitmapPool pool = GaugeBitmapPool.getInstance();
+		final int count = mAngleSteps > 0 ? mAngleSteps : 2;
+		mSprites = new Bitmap[count];
+		for (int i = 0; i < count; i++) {
+			mSprites[i] = pool.obtain(size, size, Bitmap.Config.ARGB_8888);
+			final Canvas canvas = new Canvas(mSprites[i]);
+			if (mAngleSteps > 0) {
+				final float angle = i * 360.0f / mAngleSteps;
+				renderer.drawNeedle(canvas, angle, mPivot, mPivot, isShadowOnLeft(angle));
+			} else {
+				renderer.drawNeedle(canvas, 0, mPivot, mPivot, 1 == i);
+			}
+		}
+	}
+
+	public void draw(final Canvas canvas, final float angle, final float centerX, final float centerY) {
+		if (mAngleSteps > 0) {
+			final int step = (Math.round(angle * mAngleSteps / 360.0f) % mAngleSteps + mAngleSteps) % mAngleSteps;
+			canvas.drawBitmap(mSprites[step], centerX - mPivot, centerY - mPivot, mPaint);
+		} else {
+			canvas.save(Canvas.MATRIX_SAVE_FLAG);
+			canvas.rotate(angle, centerX, centerY);
+			canvas.drawBitmap(mSprites[isShadowOnLeft(angle) ? 1 : 0], centerX - mPivot, centerY - mPivot, mPaint);
+			canvas.restore();
+		}
+	}
+
+	public void release() {
+		if (null != mSprites) {
+			final GaugeBitmapPool pool = GaugeBitmapPool.getInstance();
+			for (final Bitmap sprite : mSprites) {
+				pool.put(sprite);
+			}
+			mSprites = null;
+		}
+	}
+
+	public static boolean isShadowOnLeft(final float angle) {
+		return angle > 180 && angle < 360;
+	}
+}
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Evelina Vrabie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *******************************************************************************/
+package org.codeandmagic.android.gauge;
+
+import java.lang.ref.WeakReference;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapShader;
+import android.graphics.Matrix;
+import android.graphics.Shader;
+import android.graphics.Shader.TileMode;
+import android.util.SparseArray;
+
+/**
+ * The aluminium texture of the outer rim, shared by every gauge in the process. It is decoded once
+ * per sample size and only weakly held here, so it is freed once no rim paint uses it any more.
+ * <p>
+ * The texture covers the whole gauge, so it is decoded without density scaling and subsampled to
+ * the pixel size of the gauge instead: decodeResource() would blow it up to several times its size
+ * on dense screens, only for small gauges to sample a fraction of it.
+ */
+final class RimTexture {
+
+	private static final SparseArray<WeakReference<RimTexture>> sCache = new SparseArray<WeakReference<RimTexture>>();
+	private static int sWidth;
+	private static int sHeight;
+
+	private final BitmapShader mShader;
+	private final int mSampleSize;
+
+	private RimTexture(final Bitmap bitmap, final int sampleSize) {
+		mSampleSize = sampleSize;
+		// Stretched once over the unit square, never modified after this, so paints can share it
+		mShader = new BitmapShader(bitmap, TileMode.REPEAT, TileMode.REPEAT);
+		final Matrix matrix = new Matrix();
+		matrix.setScale(1.0f / bitmap.getWidth(), 1.0f / bitmap.getHeight());
+		mShader.setLocalMatrix(matrix);
+	}
+
+	/**
+	 * @param size the size of the gauge in pixels
+	 * @return the texture with enough detail for a gauge of that size
+	 */
+	static RimTexture obtain(final Resources resources, final float size) {
+		synchronized (sCache) {
+			final int sampleSize = getSampleSize(resources, size);
+			final WeakReference<RimTexture> reference = sCache.get(sampleSize);
+			RimTexture texture = null != reference ? reference.get() : null;
+			if (null == texture) {
+				final BitmapFactory.Options options = new BitmapFactory.Options();
+				options.inScaled = false;
+				options.inSampleSize = sampleSize;
+				texture = new RimTexture(BitmapFactory.decodeResource(resources, R.drawable.light_alu, options),
+						sampleSize);
+				sCache.put(sampleSize, new WeakReference<RimTexture>(texture));
+			}
+			return texture;
+		}
+	}
+
+	/**
+	 * @return the largest power of two the texture can be subsampled by and still have at least
+	 *         one texel per pixel of the gauge
+	 */
+	static int getSampleSize(final Resources resources, final float size) {
+		synchronized (sCache) {
+			if (0 == sWidth) {
+				final BitmapFactory.Options options = new BitmapFactory.Options();
+				options.inJustDecodeBounds = true;
+				options.inScaled = false;
+				BitmapFactory.decodeResource(resources, R.drawable.light_alu, options);
+				sWidth = Math.max(1, options.outWidth);
+				sHeight = Math.max(1, options.outHeight);
+			}
+			int sampleSize = 1;
+			while (size > 0 && Math.min(sWidth, sHeight) / (2 * sampleSize) >= size) {
+				sampleSize *= 2;
+			}
+			return sampleSize;
+		}
+	}
+
+	int getSampleSize() {
+		return mSampleSize;
+	}
+
+	/**
+	 * @return the texture, stretched over the unit square the gauge is designed in
+	 */
+	Shader getShader() {
+		return mShader;
+	}
+}
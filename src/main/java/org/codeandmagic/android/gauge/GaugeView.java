@@ -1,19 +1,17 @@
 package org.codeandmagic.android.gauge;
 
 import android.animation.ObjectAnimator;
-import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Path;
-import android.graphics.PorterDuff;
-import android.graphics.PorterDuffXfermode;
 import android.graphics.Rect;
 import android.graphics.RectF;
-import android.os.Build;
 import android.os.Bundle;
+import android.os.Looper;
 import android.os.Parcelable;
 import android.util.AttributeSet;
 import android.view.View;
@@ -21,6 +19,10 @@ import android.view.animation.DecelerateInterpolator;
 
 import androidx.annotation.Keep;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 public class GaugeView extends View {
 
     private static final String TAG = "GaugeView";
@@ -59,6 +61,12 @@ public class GaugeView extends View {
     private Path mNeedleRightPath;
     private Path mNeedleLeftPath;
 
+    // The needle is drawn in pixel space, see onSizeChanged()
+    private final Matrix mUnitMatrix = new Matrix();
+    private float mUnitScale;
+    private final Path mNeedleRightPixelPath = new Path();
+    private final Path mNeedleLeftPixelPath = new Path();
+
     private boolean useGradient;
 
     // *--------------------------------------------------------------------- *//
@@ -73,7 +81,6 @@ public class GaugeView extends View {
     private int mNeutralDarkColor;
     private int mNeutralLightColor;
     private int mNeedleColor;
-    private int mHideCentralZoneWithColor;
     private Paint mBackgroundPaintLight;
     private RectF backgroundRectF;
     private float needleAngle;
@@ -83,7 +90,18 @@ public class GaugeView extends View {
     private Rect mClipRect;
     private RectF backgroundHideRectF;
     private float mInnerRimWidth;
-    private Paint mBackgroundHidePaint;
+    private Path mBackgroundPathLight;
+    private Path mBackgroundPathDark;
+
+    // Latest values published from other threads, as float bits
+    private final AtomicInteger mPendingValue = new AtomicInteger();
+    private final AtomicBoolean mPendingValueSet = new AtomicBoolean();
+    private final AtomicInteger mPendingAnimationValue = new AtomicInteger();
+    private final AtomicBoolean mPendingAnimationSet = new AtomicBoolean();
+    private final AtomicLong mCoalescedUpdates = new AtomicLong();
+    private ObjectAnimator mAnimation;
+    // Not on screen: values are shown straight away instead of animated
+    private boolean mSuspended = true;
 
     public GaugeView(final Context context, final AttributeSet attrs, final int defStyle) {
         super(context, attrs, defStyle);
@@ -125,7 +143,6 @@ public class GaugeView extends View {
         mScaleStartAngle = a.getFloat(R.styleable.GaugeView_scaleStartAngle, SCALE_START_ANGLE);
 
         mInnerRimWidth = a.getFloat(R.styleable.GaugeView_innerRimWidth, 0);
-        mHideCentralZoneWithColor = a.getColor(R.styleable.GaugeView_hideCentralZoneWithColor, -1);
 
         useGradient = a.getBoolean(R.styleable.GaugeView_useGradient, USE_GRADIENT_DEFAULT);
 
@@ -151,13 +168,8 @@ public class GaugeView extends View {
 //        a.recycle();
     }
 
-    @TargetApi(11)
     private void init() {
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
-            setLayerType(View.LAYER_TYPE_SOFTWARE, null);
-        }
-
         setNeedleAngle();
 
         initDrawingTools();
@@ -177,9 +189,10 @@ public class GaugeView extends View {
         mBackgroundPaintLight.setFilterBitmap(true);
         mBackgroundPaintDark.setFilterBitmap(true);
 
-        mBackgroundHidePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        mBackgroundHidePaint.setColor(mHideCentralZoneWithColor);
-        mBackgroundHidePaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_OUT));
+        // The central zone is cut out of the arcs geometrically instead of erasing it with a
+        // SRC_OUT xfermode, which needed a software layer to not punch through the window
+        mBackgroundPathLight = new Path();
+        mBackgroundPathDark = new Path();
 
         backgroundRectF = new RectF();
         backgroundHideRectF = new RectF();
@@ -318,9 +331,71 @@ public class GaugeView extends View {
         setMeasuredDimension(mWidth, mHeight);
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        updateSuspended();
+        // Invalidations and runnables posted while detached may be dropped, which would leave the
+        // flags set and every later update coalesced into one that never comes
+        if (mPendingValueSet.get()) {
+            invalidate();
+        }
+        if (mPendingAnimationSet.get()) {
+            postOnAnimation(mStartPendingAnimation);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        setSuspended(true);
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(final int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateSuspended();
+    }
+
+    @Override
+    protected void onVisibilityChanged(final View changedView, final int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateSuspended();
+    }
+
+    private void updateSuspended() {
+        setSuspended(!isShown() || VISIBLE != getWindowVisibility());
+    }
+
+    /**
+     * Ends a running animation when the gauge goes out of sight, which puts the needle on its
+     * final value and stops the animator from invalidating a view nobody sees.
+     */
+    private void setSuspended(final boolean suspended) {
+        mSuspended = suspended;
+        if (suspended && mAnimation != null && mAnimation.isRunning()) {
+            mAnimation.end();
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(final int w, final int h, final int oldw, final int oldh) {
+        // Paths drawn on a canvas scaled to the unit square are rasterized too small by the
+        // hardware renderer, so map them to pixels once per size
+        mUnitScale = Math.min(mWidth, mHeight);
+        mUnitMatrix.setScale(mUnitScale, mUnitScale);
+        mUnitMatrix.postTranslate((mWidth - mUnitScale) / 2, (mHeight - mUnitScale) / 2);
+        mNeedleLeftPath.transform(mUnitMatrix, mNeedleLeftPixelPath);
+        mNeedleRightPath.transform(mUnitMatrix, mNeedleRightPixelPath);
+    }
+
     @Override
     protected void onDraw(final Canvas canvas) {
 
+        if (mPendingValueSet.getAndSet(false)) {
+            applyValue(Float.intBitsToFloat(mPendingValue.get()));
+        }
+
 //        mCurrentValue = mTargetValue;
 
 //        if (isInEditMode()) {
@@ -331,11 +406,6 @@ public class GaugeView extends View {
 //        }
         drawBackground(canvas);
 
-        final float scale = Math.min(mWidth, mHeight);
-        canvas.scale(scale, scale);
-        canvas.translate((scale == mHeight) ? ((mWidth - scale) / 2) / scale : 0
-                , (scale == mWidth) ? ((mHeight - scale) / 2) / scale : 0);
-
 //        if (mShowNeedle) {
         drawNeedle(canvas);
 //        }
@@ -367,113 +437,30 @@ public class GaugeView extends View {
 
         computeBackgrounds();
 
-        canvas.drawArc(backgroundRectF, -start1, -sweep1, true, mBackgroundPaintLight);
-        canvas.drawArc(backgroundRectF, -start2, -sweep2, true, mBackgroundPaintDark);
         if (mInnerRimWidth > 0) {
-            canvas.drawArc(backgroundHideRectF, -start1 + 1, -sweep1 - sweep2 - 2, true, mBackgroundHidePaint);
+            setRingSegmentPath(mBackgroundPathLight, -start1, -sweep1);
+            setRingSegmentPath(mBackgroundPathDark, -start2, -sweep2);
+            canvas.drawPath(mBackgroundPathLight, mBackgroundPaintLight);
+            canvas.drawPath(mBackgroundPathDark, mBackgroundPaintDark);
+        } else {
+            canvas.drawArc(backgroundRectF, -start1, -sweep1, true, mBackgroundPaintLight);
+            canvas.drawArc(backgroundRectF, -start2, -sweep2, true, mBackgroundPaintDark);
         }
 
     }
 
-    private void computeBackgrounds() {
-
-        if (!useGradient) {
-
-            if (mCurrentValue > 50.1)
-                mBackgroundPaintLight.setColor(mPositiveLightColor);
-            else if (mCurrentValue < 49.9) {
-
-                mBackgroundPaintLight.setColor(mNegativeLightColor);
-            } else {
-                mBackgroundPaintLight.setColor(mNeutralLightColor);
-
-            }
-            if (mCurrentValue > 50.1)
-                mBackgroundPaintDark.setColor(mPositiveDarkColor);
-            else if (mCurrentValue < 49.9) {
-
-                mBackgroundPaintDark.setColor(mNegativeDarkColor);
-            } else {
-                mBackgroundPaintDark.setColor(mNeutralDarkColor);
-            }
-
-        } else {
-
-            int red0 = Color.red(mNegativeLightColor);
-            int green0 = Color.green(mNegativeLightColor);
-            int blue0 = Color.blue(mNegativeLightColor);
-
-            int red1 = Color.red(mNeutralLightColor);
-            int green1 = Color.green(mNeutralLightColor);
-            int blue1 = Color.blue(mNeutralLightColor);
-
-            int red2 = Color.red(mPositiveLightColor);
-            int green2 = Color.green(mPositiveLightColor);
-            int blue2 = Color.blue(mPositiveLightColor);
-
-            if (mCurrentValue > 50.1)
-//            mBackgroundPaintLight.setColor(mPositiveLightColor);
-                mBackgroundPaintLight.setColor(Color.rgb(
-                        (int) ((red1 * (100 - mCurrentValue) + red2 * mCurrentValue) / 100f),
-                        (int) ((green1 * (100 - mCurrentValue) + green2 * mCurrentValue) / 100f),
-                        (int) ((blue1 * (100 - mCurrentValue) + blue2 * mCurrentValue) / 100f)
-                ));
-            else if (mCurrentValue < 49.9) {
-
-//            mBackgroundPaintLight.setColor(mNegativeLightColor);
-                mBackgroundPaintLight.setColor(Color.rgb(
-                        (int) ((red0 * (100 - mCurrentValue * 2) + red1 * mCurrentValue * 2) / 100f),
-                        (int) ((green0 * (100 - mCurrentValue * 2) + green1 * mCurrentValue * 2) / 100f),
-                        (int) ((blue0 * (100 - mCurrentValue * 2) + blue1 * mCurrentValue * 2) / 100f)
-                ));
-            } else {
-                mBackgroundPaintLight.setColor(mNeutralLightColor);
-//            mBackgroundPaintLight.setColor(Color.rgb(
-//                    (int) ((red0 * (100 - mCurrentValue) + red1 * mCurrentValue) / 100f),
-//                    (int) ((green0 * (100 - mCurrentValue) + green1 * mCurrentValue) / 100f),
-//                    (int) ((blue0 * (100 - mCurrentValue) + blue1 * mCurrentValue) / 100f)
-//            ));
-
-            }
-
-
-            red0 = Color.red(mNegativeDarkColor);
-            green0 = Color.green(mNegativeDarkColor);
-            blue0 = Color.blue(mNegativeDarkColor);
-
-            red1 = Color.red(mNeutralDarkColor);
-            green1 = Color.green(mNeutralDarkColor);
-            blue1 = Color.blue(mNeutralDarkColor);
-
-            red2 = Color.red(mPositiveDarkColor);
-            green2 = Color.green(mPositiveDarkColor);
-            blue2 = Color.blue(mPositiveDarkColor);
-
-            if (mCurrentValue > 50.1) {
-//            mBackgroundPaintDark.setColor(mPositiveDarkColor);
-                mBackgroundPaintDark.setColor(Color.rgb(
-                        (int) ((red1 * (100 - mCurrentValue) + red2 * mCurrentValue) / 100f),
-                        (int) ((green1 * (100 - mCurrentValue) + green2 * mCurrentValue) / 100f),
-                        (int) ((blue1 * (100 - mCurrentValue) + blue2 * mCurrentValue) / 100f)
-                ));
-            } else if (mCurrentValue < 49.9) {
-
-//            mBackgroundPaintDark.setColor(mNegativeDarkColor);
-                mBackgroundPaintDark.setColor(Color.rgb(
-                        (int) ((red0 * (100 - mCurrentValue * 2) + red1 * mCurrentValue * 2) / 100f),
-                        (int) ((green0 * (100 - mCurrentValue * 2) + green1 * mCurrentValue * 2) / 100f),
-                        (int) ((blue0 * (100 - mCurrentValue * 2) + blue1 * mCurrentValue * 2) / 100f)
-                ));
-            } else {
-                mBackgroundPaintDark.setColor(mNeutralDarkColor);
-//            mBackgroundPaintDark.setColor(Color.rgb(
-//                    (int) ((red0 * (100 - mCurrentValue) + red1 * mCurrentValue) / 100f),
-//                    (int) ((green0 * (100 - mCurrentValue) + green1 * mCurrentValue) / 100f),
-//                    (int) ((blue0 * (100 - mCurrentValue) + blue1 * mCurrentValue) / 100f)
-//            ));
-            }
+    private void setRingSegmentPath(final Path path, final float startAngle, final float sweepAngle) {
+        path.rewind();
+        path.arcTo(backgroundRectF, startAngle, sweepAngle, true);
+        path.arcTo(backgroundHideRectF, startAngle + sweepAngle, -sweepAngle);
+        path.close();
+    }
 
-        }
+    private void computeBackgrounds() {
+        mBackgroundPaintLight.setColor(ColorBlend.getValueColor(mCurrentValue,
+                mNegativeLightColor, mNeutralLightColor, mPositiveLightColor, useGradient));
+        mBackgroundPaintDark.setColor(ColorBlend.getValueColor(mCurrentValue,
+                mNegativeDarkColor, mNeutralDarkColor, mPositiveDarkColor, useGradient));
     }
 
     private void drawNeedle(final Canvas canvas) {
@@ -487,14 +474,16 @@ public class GaugeView extends View {
             float centerY = 1.0f - mNeedleWidth * 0.5f;
 //            Log.i(TAG, String.format("needle centerY: %f, %f, %d", centerY, mNeedleWidth, mHeight));
 
-            canvas.rotate(needleAngle, 0.5f, centerY);
+            final float pixelCenterX = (mWidth - mUnitScale) / 2 + 0.5f * mUnitScale;
+            final float pixelCenterY = (mHeight - mUnitScale) / 2 + centerY * mUnitScale;
+            canvas.rotate(needleAngle, pixelCenterX, pixelCenterY);
 
-            canvas.drawPath(mNeedleLeftPath, mNeedleLeftPaint);
-            canvas.drawPath(mNeedleRightPath, mNeedleRightPaint);
+            canvas.drawPath(mNeedleLeftPixelPath, mNeedleLeftPaint);
+            canvas.drawPath(mNeedleRightPixelPath, mNeedleRightPaint);
 
             canvas.restore();
 
-            canvas.drawCircle(0.5f, centerY, mNeedleWidth * 0.5f, mNeedleScrewPaint);
+            canvas.drawCircle(pixelCenterX, pixelCenterY, mNeedleWidth * 0.5f * mUnitScale, mNeedleScrewPaint);
 //            canvas.drawCircle(0.5f, centerY, 0.04f, mNeedleScrewBorderPaint);
         }
     }
@@ -515,26 +504,82 @@ public class GaugeView extends View {
 //            }
 //        } else {
 //        mTargetValue = value;
+        applyValue(value);
+//        }
+        invalidate();
+    }
+
+    private void applyValue(final float value) {
         mCurrentValue = value;
         computeBackgrounds();
-//        }
         mNeedleInitialized = true;
         setNeedleAngle();
-        invalidate();
+    }
+
+    /**
+     * Thread-safe alternative to {@link #setTargetValue(float)}. Only the latest value is kept and
+     * drawn on the next frame, with at most one invalidation scheduled per frame.
+     */
+    public void postTargetValue(final float value) {
+        mPendingValue.set(Float.floatToIntBits(value));
+        if (mPendingValueSet.compareAndSet(false, true)) {
+            postInvalidateOnAnimation();
+        } else {
+            mCoalescedUpdates.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return how many updates posted from other threads were superseded by a later one before
+     * being applied
+     */
+    public long getCoalescedUpdateCount() {
+        return mCoalescedUpdates.get();
     }
 
     public float getTargetValue() {
         return mCurrentValue;
     }
 
+    /**
+     * Animates to the value. Can be called from any thread; calls from other threads are coalesced
+     * so only the latest one per frame starts an animation.
+     */
     public void animateTargetValue(double v) {
-        ObjectAnimator animation = ObjectAnimator.ofFloat(this, "targetValue", mCurrentValue, (float) v); // see this max value coming back here, we animale towards that value
-
-        animation.setDuration(ANIMATION_DURATION_DEFAULT); //in milliseconds
-        animation.setInterpolator(new DecelerateInterpolator());
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            startAnimation((float) v);
+            return;
+        }
+        mPendingAnimationValue.set(Float.floatToIntBits((float) v));
+        if (mPendingAnimationSet.compareAndSet(false, true)) {
+            postOnAnimation(mStartPendingAnimation);
+        } else {
+            mCoalescedUpdates.incrementAndGet();
+        }
+    }
 
-        post(animation::start);
+    private final Runnable mStartPendingAnimation = () -> {
+        mPendingAnimationSet.set(false);
+        startAnimation(Float.intBitsToFloat(mPendingAnimationValue.get()));
+    };
 
+    private void startAnimation(final float value) {
+        if (mSuspended) {
+            if (mAnimation != null) {
+                mAnimation.cancel();
+            }
+            setTargetValue(value);
+            return;
+        }
+        if (mAnimation == null) {
+            mAnimation = ObjectAnimator.ofFloat(this, "targetValue", mCurrentValue, value); // see this max value coming back here, we animale towards that value
+            mAnimation.setDuration(ANIMATION_DURATION_DEFAULT); //in milliseconds
+            mAnimation.setInterpolator(new DecelerateInterpolator());
+        } else {
+            mAnimation.cancel();
+            mAnimation.setFloatValues(mCurrentValue, value);
+        }
+        mAnimation.start();
     }
 
     public void setUseGradient(boolean useGradient) {